@@ -0,0 +1,417 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// Benchmarks de los caminos calientes de MatchearDNI sobre datos de GeneradorDatos.
+// No es JMH a propósito: JMH no acepta benchmarks en el paquete por defecto y
+// desde otro paquete no se pueden usar las clases de este, así que habría que
+// mover todo el proyecto a un paquete y sumarle un build. Es un arnés simple en
+// Java: cada benchmark corre iteraciones de calentamiento y de medición de
+// duración fija y reporta ns/op y bytes asignados por op (con el ThreadMXBean de
+// HotSpot, lo mismo que mide el profiler gc de JMH). Los resultados se consumen
+// en un campo volatile (el papel del Blackhole) para que el JIT no elimine el
+// trabajo. Todos pasan por el mismo llamado a Operacion.ejecutar, que en una sola
+// JVM se vuelve megamórfico: sin forks, los que corren después pierden inlining
+// y escape analysis y sus números dependen del orden. Con --forks N cada
+// microbenchmark corre solo en N JVMs nuevas (--fork NOMBRE), como los forks de
+// JMH, y se informa la media y el desvío entre forks.
+// La corrida completa reporta throughput, GCs y latencia p50/p99 por registro.
+// Con --memoria solo compara el heap retenido por IndiceCuentas contra el HashMap
+// que reemplazó (conviene -Xmx2g: el mapa con 2.7M filas pasa los 700 MB).
+// Uso: java BenchmarkMatchearDNI [directorio] [filasConDNI] [filasSinDNI]
+//      [--solo-micro | --solo-e2e | --memoria] [--forks N]
+public class BenchmarkMatchearDNI {
+
+    private static final int ITERACIONES_CALENTAMIENTO = 3;
+    private static final int ITERACIONES_MEDICION = 5;
+    private static final long NANOS_POR_ITERACION = 1_000_000_000L;
+    private static final int MUESTRAS = 20_000;
+
+    private static final com.sun.management.ThreadMXBean HILOS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static volatile long sumidero;
+
+    // Los microbenchmarks de benchmarksMicro, en orden
+    static final List<String> MICROBENCHMARKS = Arrays.asList("normalizarTexto", "similitudTexto",
+        "levenshteinDistance", "similitudNombre", "cascada3Puntajes", "cascada3PuntajesSinCotas", "parsearLineaCSV");
+
+    // En un fork corre solo ese microbenchmark y el resultado sale también en una
+    // línea para el proceso padre
+    private static String soloBenchmark;
+    private static final String PREFIJO_FORK = "#resultado ";
+
+    // Una operación sobre la entrada i de la muestra; el resultado se consume
+    interface Operacion {
+        long ejecutar(int i);
+    }
+
+    // Arma una estructura con con_dni.txt para medir cuánto heap retiene
+    interface Carga {
+        Object cargar() throws IOException;
+    }
+
+    public static void main(String[] args) {
+        List<String> posicionales = new ArrayList<>();
+        boolean micro = true;
+        boolean e2e = true;
+        boolean memoria = false;
+        int forks = 0;
+        for (int a = 0; a < args.length; a++) {
+            String arg = args[a];
+            if (arg.equals("--forks") && a + 1 < args.length) {
+                forks = Integer.parseInt(args[++a]);
+            } else if (arg.equals("--fork") && a + 1 < args.length) {
+                soloBenchmark = args[++a];
+                if (!MICROBENCHMARKS.contains(soloBenchmark)) {
+                    System.err.println("Microbenchmark desconocido: " + soloBenchmark + " (hay " + MICROBENCHMARKS + ")");
+                    System.exit(1);
+                }
+                e2e = false;
+            } else if (arg.equals("--solo-micro")) {
+                e2e = false;
+            } else if (arg.equals("--solo-e2e")) {
+                micro = false;
+            } else if (arg.equals("--memoria")) {
+                memoria = true;
+            } else {
+                posicionales.add(arg);
+            }
+        }
+        String directorio = posicionales.size() > 0 ? posicionales.get(0) : "bench_datos";
+        int filasConDNI = posicionales.size() > 1 ? Integer.parseInt(posicionales.get(1)) : 2_700_000;
+        int filasSinDNI = posicionales.size() > 2 ? Integer.parseInt(posicionales.get(2)) : 400_000;
+
+        try {
+            String archivoConDNI = new File(directorio, "con_dni.txt").getPath();
+            String archivoSinDNI = new File(directorio, "sin_dni.txt").getPath();
+            if (!new File(archivoConDNI).exists() || !new File(archivoSinDNI).exists()) {
+                System.out.println("Generando datos sintéticos en " + directorio + "...");
+                GeneradorDatos.generar(directorio, filasConDNI, filasSinDNI, 42);
+            }
+            if (memoria) {
+                benchmarkMemoria(archivoConDNI);
+                return;
+            }
+            if (micro && forks > 0) {
+                benchmarksEnForks(posicionales, forks);
+                micro = false;
+                if (!e2e) return;
+            }
+
+            System.out.println("=== CARGA DE con_dni.txt ===");
+            long inicio = System.nanoTime();
+            IndiceCuentas indice = MatchearDNI.cargarConDNI(archivoConDNI);
+            long nanosCarga = System.nanoTime() - inicio;
+            System.out.println(String.format("Carga: %d ms (%.0f registros/s, índice %d MB)",
+                nanosCarga / 1_000_000, indice.cantidadRegistros() * 1e9 / nanosCarga,
+                indice.bytesOcupados() / (1024 * 1024)));
+
+            if (micro) {
+                benchmarksMicro(indice, archivoSinDNI);
+            }
+            if (e2e) {
+                benchmarkCompleto(indice, archivoSinDNI);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // normalizarTexto, similitudTexto, Levenshtein, similitudNombre, la cascada de
+    // los tres puntajes con y sin cotas, y parsearLineaCSV
+    // sobre una muestra de sin_dni.txt y los nombres de sus cuentas en con_dni.txt
+    static void benchmarksMicro(IndiceCuentas indice, String archivoSinDNI) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        List<String> nombresSin = new ArrayList<>();
+        List<String> nombresCon = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(archivoSinDNI), "ISO-8859-1"))) {
+            br.readLine(); // Saltar header
+            String linea;
+            while ((linea = br.readLine()) != null && nombresSin.size() < MUESTRAS) {
+                String[] campos = MatchearDNI.parsearLineaCSV(linea);
+                if (campos.length < 2) continue;
+                lineas.add(linea);
+                int registro = indice.buscar(MatchearDNI.normalizarCuenta(campos[0]));
+                if (registro >= 0) {
+                    nombresSin.add(campos[1]);
+                    nombresCon.add(indice.nombre(registro));
+                }
+            }
+        }
+
+        int n = nombresSin.size();
+        String[] sin = nombresSin.toArray(new String[0]);
+        String[] con = nombresCon.toArray(new String[0]);
+        String[] sinNormalizados = new String[n];
+        for (int i = 0; i < n; i++) {
+            sinNormalizados[i] = MatchearDNI.normalizarTexto(sin[i]);
+        }
+        String[] lineasCSV = lineas.toArray(new String[0]);
+        CascadaSimilitud conCotas = CascadaSimilitud.desde("levenshtein,jaro-winkler,token-sort", true);
+        CascadaSimilitud sinCotas = CascadaSimilitud.desde("levenshtein,jaro-winkler,token-sort", false);
+
+        System.out.println("\n=== MICROBENCHMARKS (" + n + " pares de nombres) ===");
+        System.out.println(String.format("%-28s %12s %10s %12s", "benchmark", "ns/op", "± ns/op", "B/op"));
+        medir("normalizarTexto", n, i -> MatchearDNI.normalizarTexto(sin[i]).length());
+        medir("similitudTexto", n, i -> (long) (1000 * MatchearDNI.similitudTexto(sinNormalizados[i], con[i])));
+        medir("levenshteinDistance", n, i -> MotorLevenshtein.distancia(sinNormalizados[i], con[i]));
+        medir("similitudNombre", n, i -> (long) (1000 * MatchearDNI.similitudNombre(sin[i], con[i])));
+        medir("cascada3Puntajes", n, i -> (long) (1000 * conCotas.similitud(sinNormalizados[i], con[i], 0)));
+        medir("cascada3PuntajesSinCotas", n, i -> (long) (1000 * sinCotas.similitud(sinNormalizados[i], con[i], 0)));
+        medir("parsearLineaCSV", lineasCSV.length, i -> MatchearDNI.parsearLineaCSV(lineasCSV[i]).length);
+    }
+
+    // Corre iteraciones de NANOS_POR_ITERACION sobre las entradas 0..cantidad-1 en ciclo
+    static void medir(String nombre, int cantidad, Operacion operacion) {
+        if (soloBenchmark != null && !soloBenchmark.equals(nombre)) {
+            return;
+        }
+        if (cantidad == 0) {
+            System.out.println(String.format("%-28s %12s", nombre, "sin datos"));
+            return;
+        }
+
+        long hilo = Thread.currentThread().getId();
+        double[] nanosPorOp = new double[ITERACIONES_MEDICION];
+        long bytesTotales = 0;
+        long opsTotales = 0;
+        int i = 0;
+
+        for (int iteracion = 0; iteracion < ITERACIONES_CALENTAMIENTO + ITERACIONES_MEDICION; iteracion++) {
+            long acumulado = 0;
+            long ops = 0;
+            long bytesAntes = HILOS.getThreadAllocatedBytes(hilo);
+            long inicio = System.nanoTime();
+            long fin = inicio + NANOS_POR_ITERACION;
+            long ahora;
+            do {
+                // De a 256 ops entre lecturas del reloj
+                for (int k = 0; k < 256; k++) {
+                    acumulado += operacion.ejecutar(i);
+                    if (++i == cantidad) i = 0;
+                }
+                ops += 256;
+                ahora = System.nanoTime();
+            } while (ahora < fin);
+            long bytes = HILOS.getThreadAllocatedBytes(hilo) - bytesAntes;
+            sumidero += acumulado;
+
+            if (iteracion >= ITERACIONES_CALENTAMIENTO) {
+                nanosPorOp[iteracion - ITERACIONES_CALENTAMIENTO] = (double) (ahora - inicio) / ops;
+                bytesTotales += bytes;
+                opsTotales += ops;
+            }
+        }
+
+        double media = 0;
+        for (double v : nanosPorOp) media += v;
+        media /= nanosPorOp.length;
+        double varianza = 0;
+        for (double v : nanosPorOp) varianza += (v - media) * (v - media);
+        double desvio = Math.sqrt(varianza / Math.max(1, nanosPorOp.length - 1));
+
+        System.out.println(String.format("%-28s %12.1f %10.1f %12.1f",
+            nombre, media, desvio, (double) bytesTotales / opsTotales));
+        if (soloBenchmark != null) {
+            System.out.println(PREFIJO_FORK + nombre + " " + media + " " + (double) bytesTotales / opsTotales);
+        }
+    }
+
+    // Corre cada microbenchmark en forks JVMs nuevas, solo (mismas opciones de la
+    // JVM y mismo classpath), y promedia ns/op entre ellas. Cada fork vuelve a
+    // cargar con_dni.txt: es el precio de un perfil del JIT limpio.
+    static void benchmarksEnForks(List<String> posicionales, int forks) throws IOException {
+        List<String> comando = new ArrayList<>();
+        comando.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        comando.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(BenchmarkMatchearDNI.class.getName());
+        comando.addAll(posicionales);
+        comando.add("--fork");
+        comando.add("");  // El nombre del microbenchmark
+
+        Map<String, List<double[]>> resultados = new LinkedHashMap<>();
+        for (String benchmark : MICROBENCHMARKS) {
+            comando.set(comando.size() - 1, benchmark);
+            for (int f = 1; f <= forks; f++) {
+                System.out.println(benchmark + ": fork " + f + "/" + forks + "...");
+                Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+                try (BufferedReader salida = new BufferedReader(new InputStreamReader(proceso.getInputStream()))) {
+                    String linea;
+                    while ((linea = salida.readLine()) != null) {
+                        if (!linea.startsWith(PREFIJO_FORK)) continue;
+                        String[] partes = linea.substring(PREFIJO_FORK.length()).split(" ");
+                        resultados.computeIfAbsent(partes[0], n -> new ArrayList<>()).add(
+                            new double[] { Double.parseDouble(partes[1]), Double.parseDouble(partes[2]) });
+                    }
+                }
+                try {
+                    if (proceso.waitFor() != 0) {
+                        throw new IOException("El fork " + f + " de " + benchmark + " terminó con código " + proceso.exitValue());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrumpido esperando el fork " + f + " de " + benchmark, e);
+                }
+            }
+        }
+
+        System.out.println("\n=== MICROBENCHMARKS (" + forks + " forks) ===");
+        System.out.println(String.format("%-28s %12s %10s %12s", "benchmark", "ns/op", "± ns/op", "B/op"));
+        for (Map.Entry<String, List<double[]>> resultado : resultados.entrySet()) {
+            List<double[]> porFork = resultado.getValue();
+            double media = 0;
+            double bytes = 0;
+            for (double[] r : porFork) {
+                media += r[0];
+                bytes += r[1];
+            }
+            media /= porFork.size();
+            bytes /= porFork.size();
+            double varianza = 0;
+            for (double[] r : porFork) varianza += (r[0] - media) * (r[0] - media);
+            double desvio = Math.sqrt(varianza / Math.max(1, porFork.size() - 1));
+            System.out.println(String.format("%-28s %12.1f %10.1f %12.1f", resultado.getKey(), media, desvio, bytes));
+        }
+    }
+
+    // Paso 2 completo: throughput con todos los hilos y latencia por registro con uno
+    static void benchmarkCompleto(IndiceCuentas indice, String archivoSinDNI) throws IOException {
+        int hilos = Runtime.getRuntime().availableProcessors();
+        System.out.println("\n=== CORRIDA COMPLETA (paso 2, " + hilos + " hilo(s), sin escribir archivos) ===");
+
+        MatchearDNI.procesarSinDNI(indice, null, archivoSinDNI, hilos, null, null, false);  // Calentamiento
+        for (int iteracion = 1; iteracion <= 3; iteracion++) {
+            long gcAntes = cantidadGCs();
+            long msGcAntes = tiempoGCs();
+            long inicio = System.nanoTime();
+            MatchearDNI.BloqueProcesado total = MatchearDNI.procesarSinDNI(indice, null, archivoSinDNI, hilos, null, null, false);
+            long nanos = System.nanoTime() - inicio;
+            System.out.println(String.format("  iteración %d: %6d ms  %10.0f registros/s  (%d GCs, %d ms de GC)",
+                iteracion, nanos / 1_000_000, total.procesados * 1e9 / nanos,
+                cantidadGCs() - gcAntes, tiempoGCs() - msGcAntes));
+        }
+
+        // Latencia por registro (lectura de campos + procesarRegistro) en este hilo
+        long[] latencias = new long[1 << 16];
+        int cantidad = 0;
+        long hilo = Thread.currentThread().getId();
+        long bytesAntes = HILOS.getThreadAllocatedBytes(hilo);
+        MatchearDNI.BloqueProcesado bloque = new MatchearDNI.BloqueProcesado();
+
+        try (EscanerCSV esc = new EscanerCSV(archivoSinDNI)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                if (esc.cantidadCampos() < 2) continue;
+                long inicio = System.nanoTime();
+                MatchearDNI.procesarRegistro(indice, null, esc.campo(0), esc.campo(1), bloque);
+                long nanos = System.nanoTime() - inicio;
+
+                if (cantidad == latencias.length) {
+                    latencias = Arrays.copyOf(latencias, cantidad * 2);
+                }
+                latencias[cantidad++] = nanos;
+                if (bloque.resultados.size() >= 10_000) {
+                    bloque.resultados.clear();  // Como en el paso 2 real: el bloque se escribe y se descarta
+                }
+            }
+        }
+        long bytes = HILOS.getThreadAllocatedBytes(hilo) - bytesAntes;
+        sumidero += bloque.matcheados;
+
+        Arrays.sort(latencias, 0, cantidad);
+        System.out.println(String.format("  latencia por registro (1 hilo, %d registros, %.0f B/registro):",
+            cantidad, (double) bytes / Math.max(1, cantidad)));
+        System.out.println(String.format("    p50 %d ns  p90 %d ns  p99 %d ns  p99.9 %d ns  máx %d ns",
+            percentil(latencias, cantidad, 0.50), percentil(latencias, cantidad, 0.90),
+            percentil(latencias, cantidad, 0.99), percentil(latencias, cantidad, 0.999),
+            cantidad > 0 ? latencias[cantidad - 1] : 0));
+    }
+
+    // Heap retenido por el HashMap<String, PersonaConDNI> de antes de IndiceCuentas,
+    // por el mismo mapa con una lista por cuenta (lo que haría falta para quedarse
+    // con todos los candidatos) y por IndiceCuentas
+    static void benchmarkMemoria(String archivoConDNI) throws IOException {
+        System.out.println("\n=== MEMORIA DEL ÍNDICE (heap retenido) ===");
+        medirMemoria("HashMap<String, PersonaConDNI>", () -> cargarMapa(archivoConDNI, false));
+        medirMemoria("HashMap<String, List<PersonaConDNI>>", () -> cargarMapa(archivoConDNI, true));
+        medirMemoria("IndiceCuentas", () -> {
+            IndiceCuentas indice = MatchearDNI.cargarConDNI(archivoConDNI);
+            System.out.println(String.format("  (bytesOcupados del índice: %d MB)",
+                indice.bytesOcupados() / (1024 * 1024)));
+            return indice;
+        });
+    }
+
+    private static void medirMemoria(String nombre, Carga carga) throws IOException {
+        long antes = heapUsado();
+        Object estructura = carga.cargar();
+        long despues = heapUsado();
+        String entradas = estructura instanceof Map ? ((Map<?, ?>) estructura).size() + " cuentas"
+            : ((IndiceCuentas) estructura).cantidadRegistros() + " registros";
+        System.out.println(String.format("%-38s %8d MB  (%s)", nombre, (despues - antes) / (1024 * 1024), entradas));
+        java.lang.ref.Reference.reachabilityFence(estructura);
+    }
+
+    // La carga de MatchearDNI antes de IndiceCuentas (put: la última fila de la cuenta gana)
+    private static Map<String, Object> cargarMapa(String archivoConDNI, boolean conLista) throws IOException {
+        Map<String, Object> mapa = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(archivoConDNI), "ISO-8859-1"))) {
+            br.readLine(); // Saltar header
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] campos = MatchearDNI.parsearLineaCSV(linea);
+                if (campos.length < 5) continue;
+                MatchearDNI.PersonaConDNI persona = new MatchearDNI.PersonaConDNI(campos[2], campos[3], campos[4]);
+                String cuenta = MatchearDNI.normalizarCuenta(campos[0]);
+                if (conLista) {
+                    @SuppressWarnings("unchecked")
+                    List<MatchearDNI.PersonaConDNI> personas =
+                        (List<MatchearDNI.PersonaConDNI>) mapa.computeIfAbsent(cuenta, c -> new ArrayList<>(1));
+                    personas.add(persona);
+                } else {
+                    mapa.put(cuenta, persona);
+                }
+            }
+        }
+        return mapa;
+    }
+
+    // Heap ocupado después de unos GCs completos
+    private static long heapUsado() {
+        long usado = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            usado = Math.min(usado, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return usado;
+    }
+
+    private static long percentil(long[] ordenados, int cantidad, double p) {
+        if (cantidad == 0) return 0;
+        return ordenados[(int) Math.max(0, Math.min(cantidad - 1, Math.ceil(p * cantidad) - 1))];
+    }
+
+    private static long cantidadGCs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long tiempoGCs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,159 @@
+import java.text.Normalizer;
+import java.util.Arrays;
+
+// Normalización de texto por tabla para entradas ISO-8859-1.
+// normalizarTexto hacía cuatro pasadas (Normalizer NFD, regex de marcas,
+// toUpperCase, regex de espacios) y varios Strings intermedios por nombre. Acá
+// una tabla de 256 entradas resuelve quitar acentos y pasar a mayúsculas por
+// carácter, y el recorte y la compactación de espacios se hacen en la misma
+// pasada sobre un buffer reutilizable por hilo.
+// La tabla se arma al iniciar aplicando a cada carácter los mismos pasos que la
+// versión con Normalizer, así que el resultado es idéntico (con el mismo Locale
+// por defecto). Los textos con caracteres fuera de Latin-1 usan esa versión.
+public class CanonizadorLatin1 {
+
+    // Plegado de cada carácter Latin-1: un char, salvo los que se expanden (ß -> SS)
+    private static final char[] PLIEGUE = new char[256];
+    private static final String[] PLIEGUE_ESPECIAL = new String[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            String plegado = plegarConNormalizer(String.valueOf((char) c));
+            if (plegado.length() == 1) {
+                PLIEGUE[c] = plegado.charAt(0);
+            } else {
+                PLIEGUE_ESPECIAL[c] = plegado;
+            }
+        }
+    }
+
+    // Estado de una normalización en curso
+    private static class Buffer {
+        char[] chars = new char[128];
+        byte[] bytes = new byte[128];
+        int largo;
+        int finSinEspacios;     // Largo si el texto terminara acá (para el trim final)
+        boolean empezado;       // Ya apareció el primer carácter > ' ' (trim inicial)
+        boolean enEspacios;     // El último carácter agregado fue un espacio compactado
+
+        void reiniciar() {
+            largo = 0;
+            finSinEspacios = 0;
+            empezado = false;
+            enEspacios = false;
+        }
+
+        void agregar(int c) {
+            String especial = PLIEGUE_ESPECIAL[c];
+            if (especial == null) {
+                agregarPlegado(PLIEGUE[c]);
+            } else {
+                for (int i = 0; i < especial.length(); i++) {
+                    agregarPlegado(especial.charAt(i));
+                }
+            }
+        }
+
+        private void agregarPlegado(char c) {
+            if (c <= ' ') {
+                // trim() saca todo lo <= ' ' de los extremos
+                if (!empezado) return;
+                if (esEspacioRegex(c)) {
+                    // \s+ se reemplaza por un único espacio
+                    if (enEspacios) return;
+                    c = ' ';
+                    enEspacios = true;
+                } else {
+                    enEspacios = false;
+                }
+                escribir(c);
+            } else {
+                empezado = true;
+                enEspacios = false;
+                escribir(c);
+                finSinEspacios = largo;
+            }
+        }
+
+        private void escribir(char c) {
+            if (largo == chars.length) {
+                chars = Arrays.copyOf(chars, largo * 2);
+            }
+            chars[largo++] = c;
+        }
+    }
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    // Mismo resultado que la versión con Normalizer: sin acentos, mayúsculas, sin espacios extras
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 0xFF) {
+                return normalizarConNormalizer(texto);
+            }
+        }
+
+        Buffer buffer = BUFFERS.get();
+        buffer.reiniciar();
+        for (int i = 0; i < texto.length(); i++) {
+            buffer.agregar(texto.charAt(i));
+        }
+        return new String(buffer.chars, 0, buffer.finSinEspacios);
+    }
+
+    // Normaliza el campo de la línea actual del escáner directamente desde los
+    // bytes y agrega el resultado a destino, sin crear Strings
+    public static StringBuilder normalizar(EscanerCSV linea, int campo, StringBuilder destino) {
+        Buffer buffer = BUFFERS.get();
+        int largoCampo = linea.largoCampo(campo);
+        if (buffer.bytes.length < largoCampo) {
+            buffer.bytes = new byte[Math.max(largoCampo, buffer.bytes.length * 2)];
+        }
+        linea.copiarCampo(campo, buffer.bytes, 0);
+
+        buffer.reiniciar();
+        for (int i = 0; i < largoCampo; i++) {
+            buffer.agregar(buffer.bytes[i] & 0xFF);
+        }
+        return destino.append(buffer.chars, 0, buffer.finSinEspacios);
+    }
+
+    // Quita ceros a la izquierda de la cuenta (como replaceFirst("^0+(?!$)", ""))
+    public static String normalizarCuenta(String cuenta) {
+        int inicio = 0;
+        int ultimo = cuenta.length() - 1;
+        while (inicio < ultimo && cuenta.charAt(inicio) == '0') {
+            inicio++;
+        }
+        return inicio == 0 ? cuenta : cuenta.substring(inicio);
+    }
+
+    // Versión original de normalizarTexto, para textos con caracteres fuera de Latin-1
+    static String normalizarConNormalizer(String texto) {
+        if (texto == null || texto.trim().isEmpty()) {
+            return "";
+        }
+
+        // Quitar acentos y pasar a mayúsculas
+        String normalized = plegarConNormalizer(texto);
+
+        // Quitar espacios extras
+        normalized = normalized.trim().replaceAll("\\s+", " ");
+
+        return normalized;
+    }
+
+    private static String plegarConNormalizer(String texto) {
+        String normalized = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        normalized = normalized.replaceAll("\\p{M}", "");
+        return normalized.toUpperCase();
+    }
+
+    // Caracteres de la clase \s de java.util.regex: [ \t\n\x0B\f\r]
+    private static boolean esEspacioRegex(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Similitud entre dos nombres normalizados como cascada de etapas: las baratas
+// van primero y las caras solo corren si todavía pueden cambiar el resultado.
+// El resultado es el máximo entre la cobertura de palabras (que ya viene
+// calculada) y los puntajes configurados. Etapas:
+//   largo          cota de cada puntaje con solo los largos (con IndiceCuentas
+//                  corre antes de armar el nombre del registro). Con cotas
+//                  resuelve también los nombres idénticos: su cobertura es 1.0
+//   solapamiento   cota con los caracteres en común (multiconjunto de chars);
+//                  se saltea si todos los puntajes cuestan menos que contarlos
+//   <puntajes>     en orden; después de cada uno se corta si lo que falta no
+//                  puede superar al mejor hasta ahí
+// Si la cota de todos los puntajes que faltan no supera al mejor, el par queda
+// resuelto en esa etapa con el mejor valor: es exacto, no una aproximación.
+// Cada etapa cuenta los pares que resolvió (por hilo, sin sincronizar).
+// La cascada predeterminada (solo levenshtein) da los mismos valores que
+// similitudNombre antes de la cascada.
+public class CascadaSimilitud {
+
+    // Un puntaje entre 0 y 1 que se puede acotar desde arriba barato
+    public interface Puntaje {
+        String nombre();
+
+        // Cota superior para nombres de esos largos con comunes caracteres en
+        // común (comunes <= min(largo1, largo2))
+        double cota(int largo1, int largo2, int comunes);
+
+        // Puntaje exacto si es >= minimo; si no, cualquier valor < minimo
+        double puntuar(CharSequence n1, CharSequence n2, double minimo);
+
+        // Si puntuar cuesta menos que contar los caracteres en común
+        default boolean barato(int largo1, int largo2) {
+            return false;
+        }
+    }
+
+    // 1 - distancia / largo mayor, como MatchearDNI.similitudTexto
+    public static final Puntaje LEVENSHTEIN = new Puntaje() {
+        public String nombre() {
+            return "levenshtein";
+        }
+
+        public double cota(int largo1, int largo2, int comunes) {
+            // Cada carácter sin pareja es al menos una edición; misma aritmética que MotorLevenshtein
+            int largoMayor = Math.max(largo1, largo2);
+            return largoMayor == 0 ? 1.0 : 1.0 - ((double) (largoMayor - comunes) / largoMayor);
+        }
+
+        public double puntuar(CharSequence n1, CharSequence n2, double minimo) {
+            return MotorLevenshtein.similitud(n1, n2, minimo);
+        }
+
+        // Con Myers es una pasada de operaciones de bits, con corte temprano
+        public boolean barato(int largo1, int largo2) {
+            return Math.min(largo1, largo2) <= 64;
+        }
+    };
+
+    // Jaro-Winkler (prefijo de hasta 4 con peso 0.1)
+    public static final Puntaje JARO_WINKLER = new Puntaje() {
+        public String nombre() {
+            return "jaro-winkler";
+        }
+
+        public double cota(int largo1, int largo2, int comunes) {
+            if (comunes == 0) return largo1 == 0 && largo2 == 0 ? 1.0 : 0.0;
+            double jaro = ((double) comunes / largo1 + (double) comunes / largo2 + 1.0) / 3.0;
+            return Math.min(1.0, jaro + 0.4 * (1.0 - jaro) + 1e-9);  // Margen por redondeo
+        }
+
+        public double puntuar(CharSequence n1, CharSequence n2, double minimo) {
+            return jaroWinkler(n1, n2);
+        }
+    };
+
+    // Levenshtein entre los nombres con las palabras ordenadas: no depende del
+    // orden de nombre y apellido. Mismo largo y mismos caracteres que el
+    // nombre, así que sirve la misma cota.
+    public static final Puntaje TOKEN_SORT = new Puntaje() {
+        public String nombre() {
+            return "token-sort";
+        }
+
+        public double cota(int largo1, int largo2, int comunes) {
+            return LEVENSHTEIN.cota(largo1, largo2, comunes);
+        }
+
+        public double puntuar(CharSequence n1, CharSequence n2, double minimo) {
+            return MotorLevenshtein.similitud(palabrasOrdenadas(n1), palabrasOrdenadas(n2), minimo);
+        }
+    };
+
+    private static final Puntaje[] DISPONIBLES = { LEVENSHTEIN, JARO_WINKLER, TOKEN_SORT };
+
+    public static final CascadaSimilitud PREDETERMINADA = new CascadaSimilitud(true, LEVENSHTEIN);
+
+    private static final int LARGO = 0;
+    private static final int SOLAPAMIENTO = 1;
+    private static final int PRIMER_PUNTAJE = 2;
+
+    // Caracteres de n1 pendientes de pareja, reutilizables por hilo; los de fuera
+    // de Latin-1 comparten el último casillero
+    private static final ThreadLocal<int[]> CONTEOS = ThreadLocal.withInitial(() -> new int[257]);
+
+    private final Puntaje[] puntajes;
+    private final boolean conCotas;
+    private final String[] etapas;
+
+    // Pares resueltos por etapa; un array por hilo
+    private final List<long[]> resueltas = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<long[]> resueltasDelHilo;
+
+    public CascadaSimilitud(boolean conCotas, Puntaje... puntajes) {
+        if (puntajes.length == 0) {
+            throw new IllegalArgumentException("la cascada necesita al menos un puntaje");
+        }
+        this.puntajes = puntajes.clone();
+        this.conCotas = conCotas;
+        etapas = new String[PRIMER_PUNTAJE + puntajes.length];
+        etapas[LARGO] = "largo";
+        etapas[SOLAPAMIENTO] = "solapamiento";
+        for (int i = 0; i < puntajes.length; i++) {
+            etapas[PRIMER_PUNTAJE + i] = puntajes[i].nombre();
+        }
+        resueltasDelHilo = ThreadLocal.withInitial(() -> {
+            long[] propias = new long[etapas.length];
+            resueltas.add(propias);
+            return propias;
+        });
+    }
+
+    // Puntajes separados por coma (ej. "levenshtein,jaro-winkler")
+    public static CascadaSimilitud desde(String lista, boolean conCotas) {
+        List<Puntaje> elegidos = new ArrayList<>();
+        for (String nombre : lista.split(",")) {
+            Puntaje elegido = null;
+            for (Puntaje puntaje : DISPONIBLES) {
+                if (puntaje.nombre().equals(nombre.trim())) {
+                    elegido = puntaje;
+                }
+            }
+            if (elegido == null) {
+                throw new IllegalArgumentException("puntaje desconocido: " + nombre.trim());
+            }
+            if (!elegidos.contains(elegido)) {
+                elegidos.add(elegido);
+            }
+        }
+        return new CascadaSimilitud(conCotas, elegidos.toArray(new Puntaje[0]));
+    }
+
+    // Máximo entre cobertura y los puntajes, con n1 y n2 ya normalizados
+    public double similitud(CharSequence n1, CharSequence n2, double cobertura) {
+        double resuelto = porLargo(n1.length(), n2.length(), cobertura);
+        return resuelto >= 0 ? resuelto : porContenido(n1, n2, cobertura);
+    }
+
+    // Primera etapa, solo con los largos: el resultado si la resuelve, o -1
+    public double porLargo(int largo1, int largo2, double cobertura) {
+        if (conCotas && cota(0, largo1, largo2, Math.min(largo1, largo2)) <= cobertura) {
+            resueltasDelHilo.get()[LARGO]++;
+            return cobertura;
+        }
+        return -1;
+    }
+
+    // El resto de la cascada, para un par que porLargo no resolvió
+    public double porContenido(CharSequence n1, CharSequence n2, double cobertura) {
+        long[] cuenta = resueltasDelHilo.get();
+        double mejor = cobertura;
+        int largo1 = n1.length();
+        int largo2 = n2.length();
+        int comunes = Math.min(largo1, largo2);
+        if (conCotas && !baratos(largo1, largo2)) {
+            comunes = caracteresEnComun(n1, n2);
+            if (cota(0, largo1, largo2, comunes) <= mejor) {
+                cuenta[SOLAPAMIENTO]++;
+                return mejor;
+            }
+        }
+
+        for (int i = 0; i < puntajes.length; i++) {
+            mejor = Math.max(mejor, puntajes[i].puntuar(n1, n2, mejor));
+            if (i == puntajes.length - 1 || conCotas && cota(i + 1, largo1, largo2, comunes) <= mejor) {
+                cuenta[PRIMER_PUNTAJE + i]++;
+                return mejor;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    // Nombres de las etapas, en orden
+    public String[] etapas() {
+        return etapas.clone();
+    }
+
+    // Pares resueltos por cada etapa hasta ahora (lectura sin sincronizar: alcanza para un informe)
+    public long[] resueltasPorEtapa() {
+        long[] total = new long[etapas.length];
+        for (long[] propias : resueltas) {
+            for (int i = 0; i < total.length; i++) {
+                total[i] += propias[i];
+            }
+        }
+        return total;
+    }
+
+    // "largo 3, solapamiento 12, ..." con el porcentaje de cada etapa
+    public String resumen() {
+        long[] total = resueltasPorEtapa();
+        long pares = 0;
+        for (long cantidad : total) pares += cantidad;
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < etapas.length; i++) {
+            texto.append(i == 0 ? "" : ", ").append(etapas[i]).append(' ').append(total[i]);
+            if (pares > 0) {
+                texto.append(String.format(" (%.1f%%)", 100.0 * total[i] / pares));
+            }
+        }
+        return texto.toString();
+    }
+
+    // Los puntajes separados por coma, como en desde(): es lo que decide los
+    // resultados (las cotas no los cambian)
+    public String puntajes() {
+        StringBuilder texto = new StringBuilder();
+        for (Puntaje puntaje : puntajes) {
+            texto.append(texto.length() == 0 ? "" : ",").append(puntaje.nombre());
+        }
+        return texto.toString();
+    }
+
+    public String descripcion() {
+        return conCotas ? puntajes() : puntajes() + " (sin cotas)";
+    }
+
+    private double cota(int desde, int largo1, int largo2, int comunes) {
+        double cota = 0;
+        for (int i = desde; i < puntajes.length; i++) {
+            cota = Math.max(cota, puntajes[i].cota(largo1, largo2, comunes));
+        }
+        return cota;
+    }
+
+    private boolean baratos(int largo1, int largo2) {
+        for (Puntaje puntaje : puntajes) {
+            if (!puntaje.barato(largo1, largo2)) return false;
+        }
+        return true;
+    }
+
+    // Tamaño de la intersección de los multiconjuntos de caracteres. Los chars
+    // fuera de Latin-1 cuentan como uno solo: puede dar de más, nunca de menos,
+    // así que sigue siendo una cota.
+    static int caracteresEnComun(CharSequence n1, CharSequence n2) {
+        int[] conteos = CONTEOS.get();
+        for (int i = 0; i < n1.length(); i++) {
+            conteos[Math.min(n1.charAt(i), 0x100)]++;
+        }
+        int comunes = 0;
+        for (int i = 0; i < n2.length(); i++) {
+            int c = Math.min(n2.charAt(i), 0x100);
+            if (conteos[c] > 0) {
+                conteos[c]--;
+                comunes++;
+            }
+        }
+        for (int i = 0; i < n1.length(); i++) {
+            conteos[Math.min(n1.charAt(i), 0x100)] = 0;
+        }
+        return comunes;
+    }
+
+    static double jaroWinkler(CharSequence s1, CharSequence s2) {
+        int largo1 = s1.length();
+        int largo2 = s2.length();
+        if (largo1 == 0 || largo2 == 0) return largo1 == largo2 ? 1.0 : 0.0;
+
+        int ventana = Math.max(0, Math.max(largo1, largo2) / 2 - 1);
+        boolean[] usados1 = new boolean[largo1];
+        boolean[] usados2 = new boolean[largo2];
+        int comunes = 0;
+        for (int i = 0; i < largo1; i++) {
+            int hasta = Math.min(largo2, i + ventana + 1);
+            for (int j = Math.max(0, i - ventana); j < hasta; j++) {
+                if (!usados2[j] && s1.charAt(i) == s2.charAt(j)) {
+                    usados1[i] = true;
+                    usados2[j] = true;
+                    comunes++;
+                    break;
+                }
+            }
+        }
+        if (comunes == 0) return 0.0;
+
+        int transposiciones = 0;
+        for (int i = 0, j = 0; i < largo1; i++) {
+            if (!usados1[i]) continue;
+            while (!usados2[j]) j++;
+            if (s1.charAt(i) != s2.charAt(j)) transposiciones++;
+            j++;
+        }
+        double m = comunes;
+        double jaro = (m / largo1 + m / largo2 + (m - transposiciones / 2.0) / m) / 3.0;
+
+        int prefijo = 0;
+        while (prefijo < Math.min(4, Math.min(largo1, largo2)) && s1.charAt(prefijo) == s2.charAt(prefijo)) {
+            prefijo++;
+        }
+        return jaro + prefijo * 0.1 * (1.0 - jaro);
+    }
+
+    private static String palabrasOrdenadas(CharSequence nombre) {
+        String[] palabras = nombre.toString().split(" ");
+        Arrays.sort(palabras);
+        return String.join(" ", palabras);
+    }
+}
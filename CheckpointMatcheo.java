@@ -0,0 +1,258 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// Journal de solo-agregado del paso 2 para retomar una corrida cortada.
+// Después de escribir cada bloque de sin_dni.txt se agrega una entrada con el
+// offset de sin_dni.txt hasta donde está todo procesado, los totales acumulados
+// y el largo de cada archivo de salida en ese momento. Los archivos de salida
+// se escriben en orden de archivo, así que cada entrada marca un prefijo válido
+// de todos ellos.
+// Al arrancar con --checkpoint, si el journal corresponde a los mismos archivos
+// de entrada y opciones, se toma la última entrada íntegra cuyos largos entran
+// en los archivos que hay en disco, se truncan las salidas a esos largos y se
+// sigue desde su offset. Las filas ya escritas (con sus passwords) no se rehacen.
+// Los fsync se agrupan: a lo sumo uno por segundo (salidas primero, journal
+// después); una entrada que no llegó al disco solo hace retroceder un poco más.
+// Formato (big-endian):
+//   "MDNIJRN3" | fuente de sin_dni.txt | fuente de con_dni.txt | con candidatos |
+//   puntajes de similitud
+//   entradas: largo | offset, totales, conteo por COD, largos de salida | CRC32C
+public class CheckpointMatcheo implements Closeable {
+
+    static final String ARCHIVO = "matcheo.journal";
+
+    private static final long MAGIC = 0x4D444E494A524E33L;  // "MDNIJRN3"
+    private static final long NANOS_ENTRE_FSYNC = 1_000_000_000L;
+
+    private final String archivo;
+    private final FileChannel canal;
+    private final long reanudarDesde;            // 0 = desde el principio
+    private final MatchearDNI.BloqueProcesado previo;
+    private final long[] largosPrevios;          // null si no se retoma
+    private long ultimoFsync = System.nanoTime();
+
+    private CheckpointMatcheo(String archivo, FileChannel canal, long reanudarDesde,
+                              MatchearDNI.BloqueProcesado previo, long[] largosPrevios) {
+        this.archivo = archivo;
+        this.canal = canal;
+        this.reanudarDesde = reanudarDesde;
+        this.previo = previo;
+        this.largosPrevios = largosPrevios;
+    }
+
+    // Abre el journal: lo retoma si es de una corrida cortada con las mismas
+    // entradas, o empieza uno nuevo. salidas son los archivos de SalidaResultados.
+    public static CheckpointMatcheo abrir(String archivo, String archivoConDNI, String archivoSinDNI,
+                                          boolean conCandidatos, String puntajes, String[] salidas)
+            throws IOException {
+        SnapshotIndice.Fuente sinDNI = SnapshotIndice.Fuente.de(archivoSinDNI);
+        SnapshotIndice.Fuente conDNI = SnapshotIndice.Fuente.de(archivoConDNI);
+        byte[] encabezado = encabezado(sinDNI, conDNI, conCandidatos, puntajes);
+
+        Path ruta = Paths.get(archivo);
+        if (Files.exists(ruta)) {
+            FileChannel canal = FileChannel.open(ruta, StandardOpenOption.WRITE);
+            try {
+                CheckpointMatcheo retomado = retomar(archivo, ruta, canal, encabezado, salidas);
+                if (retomado != null) {
+                    return retomado;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Journal " + archivo + " ilegible (" + e.getMessage() + "): se empieza de cero");
+            }
+            canal.close();
+        }
+
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        escribirTodo(canal, ByteBuffer.wrap(encabezado));
+        canal.force(true);
+        return new CheckpointMatcheo(archivo, canal, 0, new MatchearDNI.BloqueProcesado(), null);
+    }
+
+    private static byte[] encabezado(SnapshotIndice.Fuente sinDNI, SnapshotIndice.Fuente conDNI,
+                                     boolean conCandidatos, String puntajes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(MAGIC);
+        for (SnapshotIndice.Fuente fuente : new SnapshotIndice.Fuente[] { sinDNI, conDNI }) {
+            out.writeLong(fuente.tamano);
+            out.writeLong(fuente.modificado);
+            out.writeLong(fuente.checksum);
+        }
+        out.writeBoolean(conCandidatos);
+        out.writeUTF(puntajes);
+        return bytes.toByteArray();
+    }
+
+    private static CheckpointMatcheo retomar(String archivo, Path ruta, FileChannel canal, byte[] encabezado,
+                                             String[] salidas) throws IOException {
+        // Son unos cientos de bytes por bloque de sin_dni.txt: se lee entero
+        ByteBuffer leido = ByteBuffer.wrap(Files.readAllBytes(ruta));
+        if (leido.remaining() < encabezado.length) {
+            return null;
+        }
+
+        byte[] guardado = new byte[encabezado.length];
+        leido.get(guardado);
+        if (!Arrays.equals(guardado, encabezado)) {
+            System.out.println("Journal " + archivo + " de otros archivos u opciones: se empieza de cero");
+            return null;
+        }
+
+        long[] enDisco = new long[salidas.length];
+        for (int i = 0; i < salidas.length; i++) {
+            Path salida = Paths.get(salidas[i]);
+            enDisco[i] = Files.exists(salida) ? Files.size(salida) : -1;
+        }
+
+        // Recorre hasta la primera entrada cortada o con CRC inválido
+        long finValido = leido.position();
+        long reanudarDesde = -1;
+        MatchearDNI.BloqueProcesado previo = null;
+        long[] largosPrevios = null;
+        CRC32C crc = new CRC32C();
+        while (leido.remaining() >= 4) {
+            int largo = leido.getInt();
+            if (largo <= 0 || leido.remaining() < largo + 4) break;
+            byte[] datos = new byte[largo];
+            leido.get(datos);
+            crc.reset();
+            crc.update(datos);
+            if ((int) crc.getValue() != leido.getInt()) break;
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(datos));
+            long desde = in.readLong();
+            MatchearDNI.BloqueProcesado total = leerTotales(in);
+            long[] largos = new long[in.readInt()];
+            for (int i = 0; i < largos.length; i++) {
+                largos[i] = in.readLong();
+            }
+
+            // Solo sirve si las salidas en disco llegan al menos hasta donde dice
+            boolean cubierta = largos.length == salidas.length;
+            for (int i = 0; cubierta && i < largos.length; i++) {
+                cubierta = largos[i] <= enDisco[i];
+            }
+            if (!cubierta) break;
+
+            reanudarDesde = desde;
+            previo = total;
+            largosPrevios = largos;
+            finValido = leido.position();
+        }
+
+        if (previo == null) {
+            return null;  // Ninguna entrada útil: es como empezar de cero
+        }
+
+        // Lo que sigue a la última entrada útil se descarta y se agrega desde ahí
+        canal.truncate(finValido);
+        canal.position(finValido);
+        System.out.println("Retomando desde el journal " + archivo + ": " + previo.procesados +
+            " registros ya procesados (offset " + reanudarDesde + " de sin_dni.txt)");
+        return new CheckpointMatcheo(archivo, canal, reanudarDesde, previo, largosPrevios);
+    }
+
+    // Offset de sin_dni.txt desde donde seguir (0 = desde el principio)
+    public long reanudarDesde() {
+        return reanudarDesde;
+    }
+
+    public boolean retoma() {
+        return largosPrevios != null;
+    }
+
+    // Largos a los que se truncan las salidas al retomar (null si no se retoma)
+    public long[] largosPrevios() {
+        return largosPrevios;
+    }
+
+    // Totales de lo ya procesado (vacío si no se retoma)
+    public MatchearDNI.BloqueProcesado totalPrevio() {
+        return previo;
+    }
+
+    // Agrega la entrada de un bloque ya escrito en salida: todo lo anterior a
+    // hasta está en los archivos. Cada tanto fuerza salidas y journal al disco.
+    public void registrar(long hasta, MatchearDNI.BloqueProcesado total, SalidaResultados salida) throws IOException {
+        boolean forzar = System.nanoTime() - ultimoFsync >= NANOS_ENTRE_FSYNC;
+        long[] largos = salida.confirmar(forzar);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(hasta);
+        escribirTotales(out, total);
+        out.writeInt(largos.length);
+        for (long largo : largos) {
+            out.writeLong(largo);
+        }
+        byte[] datos = bytes.toByteArray();
+
+        CRC32C crc = new CRC32C();
+        crc.update(datos);
+        ByteBuffer entrada = ByteBuffer.allocate(datos.length + 8);
+        entrada.putInt(datos.length).put(datos).putInt((int) crc.getValue()).flip();
+        escribirTodo(canal, entrada);
+
+        if (forzar) {
+            canal.force(false);
+            ultimoFsync = System.nanoTime();
+        }
+    }
+
+    private static void escribirTotales(DataOutputStream out, MatchearDNI.BloqueProcesado total) throws IOException {
+        out.writeInt(total.procesados);
+        out.writeInt(total.matcheados);
+        out.writeInt(total.noMatcheados);
+        out.writeInt(total.busquedasDifusas);
+        out.writeInt(total.candidatosEncontrados);
+        out.writeInt(total.ambiguas);
+        out.writeLong(total.nanosBusquedaDifusa);
+        out.writeInt(total.contadorPorCod.size());
+        for (Map.Entry<String, Integer> entry : total.contadorPorCod.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static MatchearDNI.BloqueProcesado leerTotales(DataInputStream in) throws IOException {
+        MatchearDNI.BloqueProcesado total = new MatchearDNI.BloqueProcesado();
+        total.procesados = in.readInt();
+        total.matcheados = in.readInt();
+        total.noMatcheados = in.readInt();
+        total.busquedasDifusas = in.readInt();
+        total.candidatosEncontrados = in.readInt();
+        total.ambiguas = in.readInt();
+        total.nanosBusquedaDifusa = in.readLong();
+        int cods = in.readInt();
+        for (int i = 0; i < cods; i++) {
+            total.contadorPorCod.put(in.readUTF(), in.readInt());
+        }
+        return total;
+    }
+
+    private static void escribirTodo(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    // La corrida terminó bien: el journal ya no hace falta
+    public void terminar() throws IOException {
+        canal.close();
+        Files.deleteIfExists(Paths.get(archivo));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal.isOpen()) {
+            canal.force(false);
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Diccionario global de palabras de nombres: cada palabra distinta se guarda una
+// sola vez y se identifica con un id entero. Es una tabla de direccionamiento
+// abierto que se consulta sobre un rango de un CharSequence, así que buscar una
+// palabra no crea Strings. Una vez terminada la carga solo se lee, por lo que
+// puede consultarse desde varios hilos.
+public class DiccionarioTokens {
+
+    private String[] textos = new String[1024];
+    private int cantidad;
+
+    // Slots con id + 1 (0 = libre)
+    private int[] tabla = new int[2048];
+
+    public int size() {
+        return cantidad;
+    }
+
+    public String texto(int id) {
+        return textos[id];
+    }
+
+    // Id de la palabra s[desde, hasta), o -1 si no está
+    public int buscar(CharSequence s, int desde, int hasta) {
+        int slot = buscarSlot(s, desde, hasta);
+        return tabla[slot] - 1;
+    }
+
+    // Id de la palabra s[desde, hasta), agregándola si no estaba
+    public int agregar(CharSequence s, int desde, int hasta) {
+        int slot = buscarSlot(s, desde, hasta);
+        if (tabla[slot] != 0) {
+            return tabla[slot] - 1;
+        }
+
+        if (cantidad == textos.length) {
+            textos = Arrays.copyOf(textos, cantidad * 2);
+        }
+        int id = cantidad++;
+        textos[id] = s.subSequence(desde, hasta).toString();
+        tabla[slot] = id + 1;
+
+        if (cantidad * 2 > tabla.length) {
+            agrandarTabla();
+        }
+        return id;
+    }
+
+    // Ids de las palabras del nombre normalizado, en orden y separadas igual que
+    // nombre.split(" "). Con agregarNuevas = false las desconocidas quedan en -1.
+    public int[] idsDePalabras(CharSequence nombre, boolean agregarNuevas) {
+        if (nombre.length() == 0) {
+            // "".split(" ") devuelve [""]
+            return new int[] { agregarNuevas ? agregar(nombre, 0, 0) : buscar(nombre, 0, 0) };
+        }
+
+        int[] ids = new int[8];
+        int cantidadIds = 0;
+        int ultimoNoVacio = 0;  // split descarta las palabras vacías del final
+        int inicio = 0;
+        int largo = nombre.length();
+
+        for (int i = 0; i <= largo; i++) {
+            if (i == largo || nombre.charAt(i) == ' ') {
+                if (cantidadIds == ids.length) {
+                    ids = Arrays.copyOf(ids, cantidadIds * 2);
+                }
+                ids[cantidadIds++] = agregarNuevas ? agregar(nombre, inicio, i) : buscar(nombre, inicio, i);
+                if (i > inicio) {
+                    ultimoNoVacio = cantidadIds;
+                }
+                inicio = i + 1;
+            }
+        }
+        return Arrays.copyOf(ids, ultimoNoVacio);
+    }
+
+    // Guarda las palabras en el snapshot como un único bloque de chars más sus finales
+    void escribir(SnapshotIndice.Escritor escritor) throws IOException {
+        int totalChars = 0;
+        for (int id = 0; id < cantidad; id++) {
+            totalChars += textos[id].length();
+        }
+
+        char[] chars = new char[totalChars];
+        int[] fines = new int[cantidad];
+        int pos = 0;
+        for (int id = 0; id < cantidad; id++) {
+            textos[id].getChars(0, textos[id].length(), chars, pos);
+            pos += textos[id].length();
+            fines[id] = pos;
+        }
+
+        escritor.escribirChars(chars, totalChars);
+        escritor.escribirInts(fines, cantidad);
+    }
+
+    // Rearma el diccionario desde el snapshot conservando los mismos ids
+    static DiccionarioTokens leer(SnapshotIndice.Lector lector) throws IOException {
+        char[] chars = lector.leerChars();
+        int[] fines = lector.leerInts();
+
+        DiccionarioTokens diccionario = new DiccionarioTokens();
+        diccionario.textos = new String[Math.max(1024, fines.length)];
+        int inicio = 0;
+        for (int id = 0; id < fines.length; id++) {
+            diccionario.textos[id] = new String(chars, inicio, fines[id] - inicio);
+            inicio = fines[id];
+        }
+        diccionario.cantidad = fines.length;
+        diccionario.tabla = new int[Integer.highestOneBit(Math.max(1024, fines.length)) << 2];
+        diccionario.reindexar();
+        return diccionario;
+    }
+
+    // Estimación de bytes ocupados (tabla + Strings)
+    public long bytesOcupados() {
+        long total = 4L * tabla.length + 8L * textos.length;
+        for (int i = 0; i < cantidad; i++) {
+            total += 40 + textos[i].length();
+        }
+        return total;
+    }
+
+    private int buscarSlot(CharSequence s, int desde, int hasta) {
+        int mascara = tabla.length - 1;
+        int slot = hash(s, desde, hasta) & mascara;
+        while (tabla[slot] != 0 && !iguales(textos[tabla[slot] - 1], s, desde, hasta)) {
+            slot = (slot + 1) & mascara;
+        }
+        return slot;
+    }
+
+    private void agrandarTabla() {
+        tabla = new int[tabla.length * 2];
+        reindexar();
+    }
+
+    private void reindexar() {
+        int mascara = tabla.length - 1;
+        for (int id = 0; id < cantidad; id++) {
+            String texto = textos[id];
+            int slot = hash(texto, 0, texto.length()) & mascara;
+            while (tabla[slot] != 0) {
+                slot = (slot + 1) & mascara;
+            }
+            tabla[slot] = id + 1;
+        }
+    }
+
+    private static int hash(CharSequence s, int desde, int hasta) {
+        int h = 0;
+        for (int i = desde; i < hasta; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16) ^ (h * 0x9E3779B9 >>> 7);
+    }
+
+    private static boolean iguales(String texto, CharSequence s, int desde, int hasta) {
+        if (texto.length() != hasta - desde) return false;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) != s.charAt(desde + i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,703 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.Socket;
+import java.net.http.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.net.ssl.*;
+
+// Encriptación de las cuentas encontradas contra la API (lo que hacían
+// dividir_archivo.py + encriptar_cuentas.py en 5 terminales), dentro del pipeline:
+// SalidaResultados le pasa cada encontrado apenas se escribe su bloque.
+// Un POST por cuenta con el mismo DFHCOMMAREA que el script, por un solo
+// HttpClient HTTP/1.1 que reutiliza las conexiones (keep-alive). Cada pedido
+// corre en un hilo virtual si la JVM los tiene (Java 21+); si no, en un pool de
+// hilos del tamaño del límite máximo.
+// La cantidad de pedidos en vuelo se ajusta sola (AIMD): crece de a uno por
+// ventana mientras la API responde bien y se reduce a la mitad ante timeouts,
+// errores de conexión, 429 o 502/503/504. Los reintentos esperan un tiempo al azar
+// (backoff exponencial con jitter) para no volver todos juntos.
+// Salidas con el formato de los scripts: cuentas_encriptadas.txt y cuentas_con_error.txt.
+// Se agregan fila por fila (nada de reescribir el archivo cada 500 como el script)
+// y se fuerzan al disco cada pocos segundos. Al retomar, las cuentas que ya están
+// encriptadas en cuentas_encriptadas.txt no se vuelven a enviar; las que fallaron
+// (cuenta_encriptada vacía) se sacan del archivo y se reintentan, y
+// cuentas_con_error.txt se arma de nuevo con las que vuelvan a fallar.
+// Uso: java EncriptadorCuentas URL [archivo] [--max N] [--inseguro] [--reanudar]
+public class EncriptadorCuentas implements Closeable {
+
+    // Las de encriptar_parte.py; las cuentas de otros COD no se envían
+    static final Set<String> ENTIDADES_PERMITIDAS = new HashSet<>(Arrays.asList(
+        "002", "004", "005", "007", "015", "024", "027", "031", "035", "036", "040", "042", "048",
+        "066", "069", "071", "074", "084", "090", "092", "093", "101", "106", "119", "129", "131",
+        "139", "140", "154", "160", "161", "163", "165", "167", "168", "170", "173", "176", "187",
+        "196", "218", "227", "234", "242", "243", "244", "247", "270"
+    ));
+
+    static final String ARCHIVO_SALIDA = "cuentas_encriptadas.txt";
+    static final String ARCHIVO_ERRORES = "cuentas_con_error.txt";
+    private static final String ENCABEZADO_SALIDA = "\"cuenta\";\"cuenta_encriptada\";\"nombre\";\"dni\";\"cod\"\r\n";
+
+    private static final int MAX_REINTENTOS = 3;
+    private static final long BACKOFF_BASE_MS = 500;    // Lo que esperaba el script entre reintentos
+    private static final long BACKOFF_MAXIMO_MS = 8000;
+    private static final int LIMITE_INICIAL = 10;        // Los MAX_WORKERS de encriptar_parte.py
+    static final int LIMITE_MAXIMO_DEFAULT = 256;
+    private static final Duration TIMEOUT_CONEXION = Duration.ofSeconds(10);
+    private static final Duration TIMEOUT_PEDIDO = Duration.ofSeconds(30);
+    private static final int SEGUNDOS_PROGRESO = 5;
+
+    // Límite adaptativo de pedidos en vuelo (aumento aditivo, reducción multiplicativa)
+    static class LimiteAdaptativo {
+        private static final long VENTANA_REDUCCION_NANOS = 200_000_000L;
+
+        private final int maximo;
+        private double limite;
+        private int enVuelo;
+        private long ultimaReduccion;
+
+        LimiteAdaptativo(int inicial, int maximo) {
+            this.maximo = maximo;
+            this.limite = Math.min(inicial, maximo);
+            this.ultimaReduccion = System.nanoTime() - VENTANA_REDUCCION_NANOS;
+        }
+
+        synchronized void adquirir() throws InterruptedException {
+            while (enVuelo >= (int) limite) {
+                wait();
+            }
+            enVuelo++;
+        }
+
+        synchronized void liberar() {
+            enVuelo--;
+            notifyAll();
+        }
+
+        // +1 por cada "límite" respuestas buenas, o sea +1 por ida y vuelta
+        synchronized void exito() {
+            limite = Math.min(maximo, limite + 1.0 / limite);
+            notifyAll();
+        }
+
+        // A lo sumo una reducción por ventana: una ráfaga de errores del mismo
+        // momento es una sola señal de congestión
+        synchronized void congestion() {
+            long ahora = System.nanoTime();
+            if (ahora - ultimaReduccion >= VENTANA_REDUCCION_NANOS) {
+                limite = Math.max(1, limite / 2);
+                ultimaReduccion = ahora;
+            }
+        }
+
+        synchronized void esperarVacio() throws InterruptedException {
+            while (enVuelo > 0) {
+                wait();
+            }
+        }
+
+        synchronized int enVuelo() {
+            return enVuelo;
+        }
+
+        synchronized int limite() {
+            return (int) limite;
+        }
+    }
+
+    // Error de un intento; congestion indica si debe bajar el límite
+    private static class FalloPedido extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final boolean congestion;
+
+        FalloPedido(String mensaje, boolean congestion) {
+            super(mensaje);
+            this.congestion = congestion;
+        }
+    }
+
+    private final URI url;
+    private final HttpClient cliente;
+    private final ExecutorService ejecutor;
+    private final boolean hilosVirtuales;
+    private final LimiteAdaptativo limite;
+    private final MetricasCorrida metricas;  // null fuera de MatchearDNI
+    private final ScheduledExecutorService progreso;
+
+    private final EscritorLatin1 salida;
+    private EscritorLatin1 errores;  // Se crea con el primer error, como el script
+    private final Map<String, Integer> yaEncriptadas = new HashMap<>();  // "cuenta;cod" de la corrida anterior
+    private final Map<String, Integer> erroresPorTipo = new HashMap<>();
+    private final long inicio = System.nanoTime();
+    private long recibidas;
+    private long excluidas;
+    private long retomadas;
+    private int reintentadasDeAntes;  // Filas con error de la corrida anterior
+    private long terminadas;
+    private long exitosas;
+    private long conError;
+    private long pedidos;      // Incluye reintentos
+    private long reintentos;
+    private long terminadasUltimoProgreso;
+    private boolean cerrado;
+
+    // Con reanudar, sigue los archivos de salida de una corrida cortada
+    public EncriptadorCuentas(String url, int limiteMaximo, boolean inseguro, MetricasCorrida metricas,
+                              boolean reanudar) throws IOException {
+        this.url = URI.create(url);
+        this.metricas = metricas;
+        this.limite = new LimiteAdaptativo(LIMITE_INICIAL, limiteMaximo);
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT_CONEXION);
+        if (inseguro) {
+            // Como verify=False del script (certificado interno de la API)
+            builder.sslContext(contextoSinVerificacion());
+        }
+        cliente = builder.build();
+
+        ExecutorService virtuales = ejecutorVirtual();
+        hilosVirtuales = virtuales != null;
+        ejecutor = virtuales != null ? virtuales : Executors.newFixedThreadPool(limiteMaximo, r -> {
+            Thread hilo = new Thread(r, "encriptador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        if (reanudar && new File(ARCHIVO_SALIDA).exists()) {
+            long largo = leerAnteriores(ARCHIVO_SALIDA, yaEncriptadas);
+            if (reintentadasDeAntes > 0) {
+                largo = sacarFallidas(ARCHIVO_SALIDA, largo);
+            }
+            salida = new EscritorLatin1(ARCHIVO_SALIDA, largo);
+            Files.deleteIfExists(Paths.get(ARCHIVO_ERRORES));
+            System.out.println("Retomando la encriptación: " + yaEncriptadas.size() +
+                " cuentas ya están en " + ARCHIVO_SALIDA +
+                (reintentadasDeAntes > 0 ? ", " + reintentadasDeAntes + " con error se reintentan" : ""));
+        } else {
+            salida = new EscritorLatin1(ARCHIVO_SALIDA);
+            salida.escribir(ENCABEZADO_SALIDA);
+        }
+
+        progreso = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "encriptador-progreso");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        progreso.scheduleAtFixedRate(this::mostrarProgreso, SEGUNDOS_PROGRESO, SEGUNDOS_PROGRESO, TimeUnit.SECONDS);
+
+        System.out.println("Encriptando contra " + url + " (hasta " + limiteMaximo + " pedidos en vuelo, " +
+            (hilosVirtuales ? "hilos virtuales" : "pool de hilos") + ")");
+    }
+
+    // Largo hasta la última línea completa (una línea cortada a medias se descarta
+    // y esa cuenta se vuelve a enviar). Anota cuenta;cod de cada fila encriptada en
+    // hechas y cuenta las que fallaron en reintentadasDeAntes.
+    private long leerAnteriores(String archivo, Map<String, Integer> hechas) throws IOException {
+        long largo;
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "r")) {
+            largo = raf.length();
+            while (largo > 0) {
+                raf.seek(largo - 1);
+                if (raf.read() == '\n') break;
+                largo--;
+            }
+        }
+        try (EscanerCSV esc = new EscanerCSV(archivo, 0, largo)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                if (esc.cantidadCampos() < 5) continue;
+                if (esc.campo(1).isEmpty()) {
+                    reintentadasDeAntes++;
+                } else {
+                    hechas.merge(esc.campo(0) + ";" + esc.campo(4), 1, Integer::sum);
+                }
+            }
+        }
+        return largo;
+    }
+
+    // Reescribe los primeros largo bytes sin las filas que fallaron (a un temporal
+    // que se renombra) y devuelve el largo nuevo. El header y las filas que quedan
+    // se copian tal cual, en tramos de bytes: EscanerCSV saca las comillas, así que
+    // reescribirlas desde los campos cambiaría las que tenían "" adentro.
+    private static long sacarFallidas(String archivo, long largo) throws IOException {
+        Path temporal = Paths.get(archivo + ".tmp");
+        try (EscanerCSV esc = new EscanerCSV(archivo, 0, largo);
+             FileChannel origen = FileChannel.open(Paths.get(archivo), StandardOpenOption.READ);
+             FileChannel destino = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Tramo pendiente de copiar: [desde, hasta)
+            long desde = 0;
+            esc.siguienteLinea(); // Header
+            long hasta = esc.inicioSiguienteLinea();
+            while (esc.siguienteLinea()) {
+                if (esc.cantidadCampos() >= 5 && !esc.campo(1).isEmpty()) {
+                    if (esc.inicioLinea() != hasta) {
+                        copiarTramo(origen, desde, hasta, destino);
+                        desde = esc.inicioLinea();
+                    }
+                    hasta = esc.inicioSiguienteLinea();
+                }
+            }
+            copiarTramo(origen, desde, hasta, destino);
+            destino.force(true);
+        }
+        Files.move(temporal, Paths.get(archivo), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(Paths.get(archivo));
+    }
+
+    private static void copiarTramo(FileChannel origen, long desde, long hasta, FileChannel destino)
+            throws IOException {
+        while (desde < hasta) {
+            desde += origen.transferTo(desde, hasta - desde, destino);
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() si existe (el proyecto compila con Java 17)
+    private static ExecutorService ejecutorVirtual() {
+        try {
+            Method metodo = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) metodo.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Solo para este cliente. Es un X509ExtendedTrustManager porque a un
+    // X509TrustManager común JSSE le agrega la verificación del nombre del host;
+    // así no hace falta tocar propiedades de toda la JVM.
+    private static SSLContext contextoSinVerificacion() throws IOException {
+        TrustManager[] confiarEnTodos = { new X509ExtendedTrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] cadena, String tipo) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] cadena, String tipo) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] cadena, String tipo, Socket socket) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] cadena, String tipo, Socket socket) {
+            }
+
+            @Override
+            public void checkClientTrusted(X509Certificate[] cadena, String tipo, SSLEngine motor) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] cadena, String tipo, SSLEngine motor) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        } };
+        try {
+            SSLContext contexto = SSLContext.getInstance("TLS");
+            contexto.init(null, confiarEnTodos, new SecureRandom());
+            return contexto;
+        } catch (java.security.GeneralSecurityException e) {
+            throw new IOException("No se pudo armar el contexto TLS", e);
+        }
+    }
+
+    // Encola una cuenta encontrada. Se bloquea mientras el límite de pedidos en
+    // vuelo esté lleno, así el matcheo no se adelanta más de lo que la API absorbe.
+    public void enviar(String cuenta, String nombre, String dni, String cod) throws IOException {
+        synchronized (this) {
+            recibidas++;
+            if (!ENTIDADES_PERMITIDAS.contains(cod)) {
+                excluidas++;
+                return;
+            }
+            // Cada fila de la corrida anterior cubre una aparición de la cuenta
+            if (!yaEncriptadas.isEmpty()) {
+                String clave = cuenta + ";" + cod;
+                Integer pendientes = yaEncriptadas.get(clave);
+                if (pendientes != null) {
+                    if (pendientes == 1) {
+                        yaEncriptadas.remove(clave);
+                    } else {
+                        yaEncriptadas.put(clave, pendientes - 1);
+                    }
+                    retomadas++;
+                    return;
+                }
+            }
+        }
+
+        try {
+            limite.adquirir();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Encriptación interrumpida", e);
+        }
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    encriptar(cuenta, nombre, dni, cod);
+                } finally {
+                    limite.liberar();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limite.liberar();
+            throw new IOException("El encriptador ya está cerrado", e);
+        }
+    }
+
+    // Un registro con sus reintentos; el permiso de vuelo se mantiene durante
+    // la espera del backoff (es menos presión sobre la API)
+    private void encriptar(String cuenta, String nombre, String dni, String cod) {
+        byte[] cuerpo = payload(cuenta, cod).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        HttpRequest pedido = HttpRequest.newBuilder(url)
+            .timeout(TIMEOUT_PEDIDO)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(cuerpo))
+            .build();
+
+        for (int intento = 0; ; intento++) {
+            synchronized (this) {
+                pedidos++;
+                if (intento > 0) reintentos++;
+            }
+            try {
+                HttpResponse<String> respuesta = cliente.send(pedido, HttpResponse.BodyHandlers.ofString());
+                String[] resultado = interpretar(respuesta);
+                limite.exito();
+                registrar(cuenta, nombre, dni, cod, resultado[0], resultado[1]);
+                return;
+            } catch (FalloPedido e) {
+                if (e.congestion) {
+                    limite.congestion();
+                }
+                if (intento >= MAX_REINTENTOS) {
+                    registrar(cuenta, nombre, dni, cod, "", "ERROR_EXCEPTION: " + recortar(e.getMessage()));
+                    return;
+                }
+            } catch (IOException e) {
+                // Timeouts, conexión rechazada o cortada
+                limite.congestion();
+                if (intento >= MAX_REINTENTOS) {
+                    registrar(cuenta, nombre, dni, cod, "", "ERROR_EXCEPTION: " + recortar(String.valueOf(e)));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                registrar(cuenta, nombre, dni, cod, "", "ERROR_EXCEPTION: interrumpido");
+                return;
+            }
+
+            try {
+                Thread.sleep(esperaReintento(intento));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                registrar(cuenta, nombre, dni, cod, "", "ERROR_EXCEPTION: interrumpido");
+                return;
+            }
+        }
+    }
+
+    // Full jitter: al azar entre 0 y base * 2^intento
+    static long esperaReintento(int intento) {
+        long tope = Math.min(BACKOFF_MAXIMO_MS, BACKOFF_BASE_MS << Math.min(intento, 10));
+        return ThreadLocalRandom.current().nextLong(tope + 1);
+    }
+
+    // {cuenta_encriptada, error} con la misma lógica que encriptar_cuenta() del script
+    private static String[] interpretar(HttpResponse<String> respuesta) throws FalloPedido {
+        int estado = respuesta.statusCode();
+        if (estado < 200 || estado >= 300) {
+            throw new FalloPedido(estado + " Error for url: " + respuesta.uri(), sobrecarga(estado));
+        }
+
+        String cuerpo = respuesta.body();
+        String retorno = valorJson(cuerpo, "WS_SVC_RETURN");
+        String mensaje = valorJson(cuerpo, "WS_ERROR_MSG");
+        if ("F".equals(retorno) || (mensaje != null && !mensaje.isEmpty())) {
+            return new String[] { "", mensaje != null && !mensaje.isEmpty() ? mensaje : "ERROR_DESCONOCIDO" };
+        }
+
+        String encriptada = valorJson(cuerpo, "WS_ENC_ACCT");
+        if (encriptada == null) {
+            throw new FalloPedido("'WS_ENC_ACCT'", false);
+        }
+        return new String[] { encriptada, null };
+    }
+
+    // 429 y 502/503/504 son la API (o el balanceador) pidiendo menos carga; un 500
+    // suelto es un error de esa cuenta y no debe frenar a las demás
+    private static boolean sobrecarga(int estado) {
+        return estado == 429 || estado == 502 || estado == 503 || estado == 504;
+    }
+
+    private static String recortar(String mensaje) {
+        return mensaje.length() > 50 ? mensaje.substring(0, 50) : mensaje;
+    }
+
+    // El cuerpo que armaba json.dumps() en el script (mismos separadores y escapes)
+    static String payload(String cuenta, String cod) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"DFHCOMMAREA\": {\"WS_CLIENT_ID\": ");
+        textoJson(json, cod);
+        json.append(", \"WS_INP_ENV\": \"\", \"WS_INP_FIELDS\": {\"WS_INP_ACCT\": ");
+        textoJson(json, cuenta);
+        json.append(", \"WS_INP_CARD_NBR\": \"\", \"WS_INP_CARD_NAME\": \"\", \"WS_INP_CVV\": \"\"," +
+            " \"WS_INP_EXPDT\": \"\"}}}");
+        return json.toString();
+    }
+
+    // String JSON con ensure_ascii, como json.dumps
+    static void textoJson(StringBuilder json, String texto) {
+        json.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                case '\b': json.append("\\b"); break;
+                case '\f': json.append("\\f"); break;
+                default:
+                    if (c < 0x20 || c > 0x7E) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    // Valor de la primera clave con ese nombre en el JSON (las del DFHCOMMAREA no
+    // se repiten). Devuelve el texto del string, el literal si no es string, o
+    // null si la clave no está.
+    static String valorJson(String json, String clave) {
+        String buscada = "\"" + clave + "\"";
+        int i = json.indexOf(buscada);
+        while (i >= 0) {
+            int j = saltarEspacios(json, i + buscada.length());
+            if (j < json.length() && json.charAt(j) == ':') {
+                j = saltarEspacios(json, j + 1);
+                if (j >= json.length()) return null;
+                if (json.charAt(j) == '"') {
+                    return leerTextoJson(json, j + 1);
+                }
+                int fin = j;
+                while (fin < json.length() && ",}] \t\r\n".indexOf(json.charAt(fin)) < 0) {
+                    fin++;
+                }
+                return json.substring(j, fin);
+            }
+            i = json.indexOf(buscada, i + 1);  // Era un valor, no una clave
+        }
+        return null;
+    }
+
+    private static int saltarEspacios(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String leerTextoJson(String json, int i) {
+        StringBuilder texto = new StringBuilder();
+        while (i < json.length()) {
+            char c = json.charAt(i++);
+            if (c == '"') {
+                return texto.toString();
+            }
+            if (c != '\\' || i >= json.length()) {
+                texto.append(c);
+                continue;
+            }
+            char escape = json.charAt(i++);
+            switch (escape) {
+                case 'n': texto.append('\n'); break;
+                case 'r': texto.append('\r'); break;
+                case 't': texto.append('\t'); break;
+                case 'b': texto.append('\b'); break;
+                case 'f': texto.append('\f'); break;
+                case 'u':
+                    if (i + 4 <= json.length()) {
+                        texto.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                        i += 4;
+                    }
+                    break;
+                default: texto.append(escape);  // \" \\ \/
+            }
+        }
+        return texto.toString();
+    }
+
+    // Escribe el resultado de una cuenta (en orden de llegada, como as_completed del script)
+    private synchronized void registrar(String cuenta, String nombre, String dni, String cod,
+                                        String encriptada, String error) {
+        terminadas++;
+        try {
+            escribirFila(salida, cuenta, encriptada, nombre, dni, cod);
+            if (error == null) {
+                exitosas++;
+                return;
+            }
+
+            conError++;
+            erroresPorTipo.merge(error, 1, Integer::sum);
+            if (errores == null) {
+                errores = new EscritorLatin1(ARCHIVO_ERRORES);
+                errores.escribir("\"cuenta\";\"nombre\";\"dni\";\"cod\";\"tipo_error\"\r\n");
+            }
+            escribirFila(errores, cuenta, nombre, dni, cod, error);
+        } catch (IOException e) {
+            System.err.println("No se pudo escribir el resultado de la cuenta " + cuenta + ": " + e.getMessage());
+        }
+    }
+
+    // Como csv.writer con QUOTE_ALL: todo entre comillas, comillas duplicadas, fin \r\n
+    private static void escribirFila(EscritorLatin1 escritor, String... campos) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) escritor.escribir(';');
+            escritor.escribir('"');
+            String campo = campos[i];
+            for (int k = 0; k < campo.length(); k++) {
+                char c = campo.charAt(k);
+                if (c == '"') escritor.escribir('"');
+                escritor.escribir(c);
+            }
+            escritor.escribir('"');
+        }
+        escritor.escribir("\r\n");
+    }
+
+    // Lo escrito hasta ahora pasa al disco (errores primero: si se corta en el
+    // medio, una cuenta puede repetirse en errores pero no perderse)
+    private synchronized void confirmar() {
+        try {
+            if (errores != null) {
+                errores.confirmar(true);
+            }
+            salida.confirmar(true);
+        } catch (IOException e) {
+            System.err.println("No se pudo confirmar " + ARCHIVO_SALIDA + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void mostrarProgreso() {
+        confirmar();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long enVentana = terminadas - terminadasUltimoProgreso;
+        terminadasUltimoProgreso = terminadas;
+        System.out.println(String.format("  Encriptadas: %d (errores %d, excluidas %d) | %.0f cuentas/seg" +
+                " (últimos %ds: %.0f) | en vuelo %d, límite %d | reintentos %d",
+            terminadas, conError, excluidas, terminadas / segundos, SEGUNDOS_PROGRESO,
+            (double) enVentana / SEGUNDOS_PROGRESO, limite.enVuelo(), limite.limite(), reintentos));
+    }
+
+    // Espera los pedidos en vuelo, cierra los archivos e imprime el resumen
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (cerrado) return;
+            cerrado = true;
+        }
+        try {
+            limite.esperarVacio();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Encriptación interrumpida", e);
+        } finally {
+            progreso.shutdownNow();
+            ejecutor.shutdownNow();
+        }
+
+        long nanos = System.nanoTime() - inicio;
+        synchronized (this) {
+            salida.close();
+            if (errores != null) {
+                errores.close();
+            }
+            if (metricas != null) {
+                metricas.sumarEtapa(MetricasCorrida.Etapa.ENCRIPTACION, nanos, pedidos);
+                metricas.registrarEscritor(salida.archivo(), salida.bytesEscritos(), salida.nanosVaciado());
+                if (errores != null) {
+                    metricas.registrarEscritor(errores.archivo(), errores.bytesEscritos(), errores.nanosVaciado());
+                }
+            }
+
+            System.out.println("\n=== ENCRIPTACIÓN ===");
+            System.out.println("Cuentas recibidas: " + recibidas + " (excluidas por COD: " + excluidas +
+                (retomadas > 0 ? ", ya encriptadas en la corrida anterior: " + retomadas : "") + ")");
+            System.out.println("Exitosas: " + exitosas);
+            System.out.println("Con errores: " + conError + (reintentadasDeAntes > 0 ? " (de " +
+                reintentadasDeAntes + " que fallaron en la corrida anterior)" : ""));
+            List<Map.Entry<String, Integer>> tipos = new ArrayList<>(erroresPorTipo.entrySet());
+            tipos.sort((a, b) -> b.getValue() - a.getValue());
+            for (Map.Entry<String, Integer> tipo : tipos) {
+                System.out.println("  - " + tipo.getKey() + ": " + tipo.getValue());
+            }
+            System.out.println(String.format("Pedidos: %d (%d reintentos) en %.1f s: %.0f pedidos/seg sostenidos, " +
+                    "límite final %d", pedidos, reintentos, nanos / 1e9, pedidos * 1e9 / Math.max(1, nanos),
+                limite.limite()));
+            System.out.println("Resultados en " + ARCHIVO_SALIDA + (errores != null ? " y " + ARCHIVO_ERRORES : ""));
+            if (conError > 0) {
+                System.out.println("ATENCIÓN: " + conError + " cuentas quedaron sin encriptar;" +
+                    " se reintentan con EncriptadorCuentas --reanudar");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> posicionales = new ArrayList<>();
+        int maximo = LIMITE_MAXIMO_DEFAULT;
+        boolean inseguro = false;
+        boolean reanudar = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max") && i + 1 < args.length) {
+                maximo = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--inseguro")) {
+                inseguro = true;
+            } else if (args[i].equals("--reanudar")) {
+                reanudar = true;
+            } else {
+                posicionales.add(args[i]);
+            }
+        }
+        if (posicionales.isEmpty() || maximo < 1) {
+            System.err.println("Uso: java EncriptadorCuentas URL [archivo] [--max N] [--inseguro] [--reanudar]");
+            return;
+        }
+        String archivo = posicionales.size() > 1 ? posicionales.get(1) : "todos_encontrados.txt";
+
+        // Lee el todos_encontrados.txt de MatchearDNI: cuenta;nombre;dni;cod
+        try (EncriptadorCuentas encriptador = new EncriptadorCuentas(posicionales.get(0), maximo, inseguro,
+                 null, reanudar);
+             EscanerCSV esc = new EscanerCSV(archivo)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                if (esc.cantidadCampos() >= 4) {
+                    encriptador.enviar(esc.campo(0), esc.campo(1), esc.campo(2), esc.campo(3));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
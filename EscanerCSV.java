@@ -0,0 +1,234 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// Lector de archivos CSV en ISO-8859-1 mapeados en memoria (FileChannel.map).
+// Recorre los bytes directamente con las mismas reglas que parsearLineaCSV:
+// separador ';', las comillas '"' abren/cierran texto y no forman parte del campo.
+// Cada campo se entrega como porción del buffer (offset/largo) y solo se arma
+// un String cuando se pide con campo(i).
+public class EscanerCSV implements Closeable {
+
+    private static final int VENTANA_MAXIMA = 1 << 30;  // FileChannel.map admite hasta 2 GB por mapeo
+
+    private final FileChannel canal;
+    private final long finArchivo;
+    private final long limite;  // Solo se leen líneas que empiezan antes de este offset
+
+    // Ventana mapeada actual: bytes [baseVentana, baseVentana + buffer.limit())
+    private MappedByteBuffer buffer;
+    private long baseVentana;
+    private int finVentana;
+
+    // Posición (relativa a la ventana) donde empieza la próxima línea
+    private int siguiente;
+
+    // Línea actual
+    private long inicioLinea;
+    private int cantidadCampos;
+    private int[] inicioCampo = new int[8];
+    private int[] finCampo = new int[8];
+    private int[] comillasCampo = new int[8];
+
+    private byte[] auxiliar = new byte[256];
+
+    public EscanerCSV(String archivo) throws IOException {
+        this(archivo, 0, Long.MAX_VALUE);
+    }
+
+    // Recorre solo las líneas que empiezan dentro de [desde, hasta). Si desde cae en
+    // medio de una línea, esa línea se saltea: le corresponde al bloque anterior.
+    public EscanerCSV(String archivo, long desde, long hasta) throws IOException {
+        canal = FileChannel.open(Paths.get(archivo), StandardOpenOption.READ);
+        finArchivo = canal.size();
+        limite = Math.min(hasta, finArchivo);
+
+        if (desde <= 0 || desde >= finArchivo) {
+            mapear(Math.max(0, Math.min(desde, finArchivo)));
+        } else {
+            // Saltear la línea (o el terminador) que contiene el byte desde - 1
+            mapear(desde - 1);
+            int fin = buscarFinDeLinea(0);
+            if (fin < 0) {
+                throw new IOException("Línea de más de " + VENTANA_MAXIMA + " bytes en offset " + baseVentana);
+            }
+            saltarTerminador(fin);
+        }
+    }
+
+    // Avanza a la próxima línea; false si no quedan más
+    public boolean siguienteLinea() throws IOException {
+        if (baseVentana + siguiente >= limite) {
+            return false;
+        }
+
+        int fin = buscarFinDeLinea(siguiente);
+        if (fin < 0) {
+            // La línea quedó cortada por el final de la ventana: remapear desde su inicio
+            mapear(baseVentana + siguiente);
+            fin = buscarFinDeLinea(0);
+            if (fin < 0) {
+                throw new IOException("Línea de más de " + VENTANA_MAXIMA + " bytes en offset " + baseVentana);
+            }
+        }
+
+        inicioLinea = baseVentana + siguiente;
+        separarCampos(siguiente, fin);
+        saltarTerminador(fin);
+        return true;
+    }
+
+    // Offset en bytes (dentro del archivo) donde empieza la línea actual
+    public long inicioLinea() {
+        return inicioLinea;
+    }
+
+    // Offset en bytes donde empieza la línea que leería el próximo siguienteLinea()
+    public long inicioSiguienteLinea() {
+        return Math.min(baseVentana + siguiente, finArchivo);
+    }
+
+    public long largoArchivo() {
+        return finArchivo;
+    }
+
+    public int cantidadCampos() {
+        return cantidadCampos;
+    }
+
+    // Largo del campo i una vez quitadas las comillas
+    public int largoCampo(int i) {
+        return finCampo[i] - inicioCampo[i] - comillasCampo[i];
+    }
+
+    // Byte j del campo i (sin contar comillas), como valor entre 0 y 255
+    public int byteCampo(int i, int j) {
+        if (comillasCampo[i] == 0) {
+            return buffer.get(inicioCampo[i] + j) & 0xFF;
+        }
+        if (esContiguo(i)) {
+            return buffer.get(inicioCampo[i] + 1 + j) & 0xFF;
+        }
+        for (int pos = inicioCampo[i]; pos < finCampo[i]; pos++) {
+            byte b = buffer.get(pos);
+            if (b != '"' && j-- == 0) {
+                return b & 0xFF;
+            }
+        }
+        throw new IndexOutOfBoundsException("Byte " + j + " fuera del campo " + i);
+    }
+
+    // Copia el campo i (sin comillas) en destino a partir de pos; devuelve el largo copiado
+    public int copiarCampo(int i, byte[] destino, int pos) {
+        int inicio = inicioCampo[i];
+        int fin = finCampo[i];
+        if (comillasCampo[i] == 0 || esContiguo(i)) {
+            if (comillasCampo[i] != 0) {
+                inicio++;
+                fin--;
+            }
+            buffer.get(inicio, destino, pos, fin - inicio);
+            return fin - inicio;
+        }
+
+        int largo = 0;
+        for (int p = inicio; p < fin; p++) {
+            byte b = buffer.get(p);
+            if (b != '"') {
+                destino[pos + largo++] = b;
+            }
+        }
+        return largo;
+    }
+
+    // Arma el String del campo i (decodificado como ISO-8859-1)
+    public String campo(int i) {
+        int largo = largoCampo(i);
+        if (auxiliar.length < largo) {
+            auxiliar = new byte[Math.max(largo, auxiliar.length * 2)];
+        }
+        copiarCampo(i, auxiliar, 0);
+        return new String(auxiliar, 0, largo, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private void mapear(long desde) throws IOException {
+        long tamano = Math.min(VENTANA_MAXIMA, finArchivo - desde);
+        buffer = canal.map(FileChannel.MapMode.READ_ONLY, desde, tamano);
+        baseVentana = desde;
+        finVentana = (int) tamano;
+        siguiente = 0;
+    }
+
+    // Saltar el terminador: \n, \r o \r\n (igual que BufferedReader.readLine)
+    private void saltarTerminador(int fin) {
+        if (fin < finVentana && buffer.get(fin) == '\r' && fin + 1 < finVentana && buffer.get(fin + 1) == '\n') {
+            siguiente = fin + 2;
+        } else {
+            siguiente = fin + 1;
+        }
+    }
+
+    // Devuelve la posición del terminador de la línea que empieza en desde (o el
+    // fin del archivo), o -1 si la línea sigue más allá de la ventana mapeada
+    private int buscarFinDeLinea(int desde) {
+        boolean ventanaHastaElFinal = baseVentana + finVentana == finArchivo;
+        for (int pos = desde; pos < finVentana; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '\n') {
+                return pos;
+            }
+            if (b == '\r') {
+                // Un \r justo al final de la ventana puede ser la mitad de un \r\n
+                return (pos + 1 < finVentana || ventanaHastaElFinal) ? pos : -1;
+            }
+        }
+        return ventanaHastaElFinal ? finVentana : -1;
+    }
+
+    private void separarCampos(int inicio, int fin) {
+        cantidadCampos = 0;
+        boolean dentroComillas = false;
+        int inicioActual = inicio;
+        int comillas = 0;
+
+        for (int pos = inicio; pos < fin; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '"') {
+                dentroComillas = !dentroComillas;
+                comillas++;
+            } else if (b == ';' && !dentroComillas) {
+                agregarCampo(inicioActual, pos, comillas);
+                inicioActual = pos + 1;
+                comillas = 0;
+            }
+        }
+        agregarCampo(inicioActual, fin, comillas);
+    }
+
+    private void agregarCampo(int inicio, int fin, int comillas) {
+        if (cantidadCampos == inicioCampo.length) {
+            inicioCampo = Arrays.copyOf(inicioCampo, cantidadCampos * 2);
+            finCampo = Arrays.copyOf(finCampo, cantidadCampos * 2);
+            comillasCampo = Arrays.copyOf(comillasCampo, cantidadCampos * 2);
+        }
+        inicioCampo[cantidadCampos] = inicio;
+        finCampo[cantidadCampos] = fin;
+        comillasCampo[cantidadCampos] = comillas;
+        cantidadCampos++;
+    }
+
+    // Campo de la forma "texto" con comillas solo en los extremos
+    private boolean esContiguo(int i) {
+        return comillasCampo[i] == 2
+            && buffer.get(inicioCampo[i]) == '"'
+            && buffer.get(finCampo[i] - 1) == '"';
+    }
+}
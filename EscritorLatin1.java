@@ -0,0 +1,145 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+// Escritura de archivos de texto ISO-8859-1 sin Writer ni String.format.
+// Cada carácter se convierte a su byte Latin-1 (los que no entran quedan como
+// '?', igual que OutputStreamWriter) y se acumula en un buffer directo grande
+// que se vuelca al canal cuando se llena.
+public class EscritorLatin1 implements Closeable {
+
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    private final String archivo;
+    private final FileChannel canal;
+    private final ByteBuffer buffer;
+    private final CRC32C checksum;  // null si no se pidió
+    private long bytesEscritos;
+    private long nanosVaciado;  // Tiempo en canal.write
+
+    public EscritorLatin1(String archivo) throws IOException {
+        this(archivo, 0);
+    }
+
+    // Sigue escribiendo un archivo existente a partir de largo (lo que haya
+    // después se descarta); con 0 lo crea vacío
+    public EscritorLatin1(String archivo, long largo) throws IOException {
+        this(archivo, largo, TAMANO_BUFFER, false);
+    }
+
+    // Archivo nuevo con un buffer de tamanoBuffer bytes (para cuando hay muchos
+    // abiertos a la vez); con conChecksum lleva el CRC32C de lo escrito
+    public EscritorLatin1(String archivo, int tamanoBuffer, boolean conChecksum) throws IOException {
+        this(archivo, 0, tamanoBuffer, conChecksum);
+    }
+
+    private EscritorLatin1(String archivo, long largo, int tamanoBuffer, boolean conChecksum) throws IOException {
+        this.archivo = archivo;
+        buffer = ByteBuffer.allocateDirect(tamanoBuffer);
+        checksum = conChecksum ? new CRC32C() : null;
+        canal = FileChannel.open(Paths.get(archivo), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        canal.truncate(largo);
+        canal.position(largo);
+        bytesEscritos = canal.size();
+    }
+
+    public EscritorLatin1 escribir(String texto) throws IOException {
+        return escribir(texto, 0);
+    }
+
+    // Escribe texto a partir de la posición desde
+    public EscritorLatin1 escribir(String texto, int desde) throws IOException {
+        int largo = texto.length();
+        for (int i = desde; i < largo; i++) {
+            char c = texto.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < largo && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                i++;  // Un par sustituto es un solo carácter no representable
+            }
+            escribir(c);
+        }
+        return this;
+    }
+
+    public EscritorLatin1 escribir(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            vaciar();
+        }
+        buffer.put(c <= 0xFF ? (byte) c : (byte) '?');
+        return this;
+    }
+
+    // Texto entre comillas dobles, como lo escribía "\"%s\""
+    public EscritorLatin1 escribirEntreComillas(String texto) throws IOException {
+        return escribir('"').escribir(texto).escribir('"');
+    }
+
+    // Porcentaje con dos decimales y punto decimal ("85.71%") a partir de centésimas
+    public EscritorLatin1 escribirPorcentaje(int centesimas) throws IOException {
+        escribirEntero(centesimas / 100);
+        escribir('.');
+        escribir((char) ('0' + centesimas / 10 % 10));
+        escribir((char) ('0' + centesimas % 10));
+        return escribir('%');
+    }
+
+    public EscritorLatin1 escribirEntero(int valor) throws IOException {
+        if (valor < 0) {
+            escribir('-');
+            valor = -valor;
+        }
+        if (valor >= 10) {
+            escribirEntero(valor / 10);
+        }
+        return escribir((char) ('0' + valor % 10));
+    }
+
+    public String archivo() {
+        return archivo;
+    }
+
+    public long bytesEscritos() {
+        return bytesEscritos + buffer.position();
+    }
+
+    public long nanosVaciado() {
+        return nanosVaciado;
+    }
+
+    // CRC32C de lo que ya pasó al archivo (ver confirmar)
+    public long checksum() {
+        return checksum.getValue();
+    }
+
+    // Pasa el buffer al archivo y, si forzar, espera a que llegue al disco
+    public void confirmar(boolean forzar) throws IOException {
+        vaciar();
+        if (forzar) {
+            canal.force(false);
+        }
+    }
+
+    private void vaciar() throws IOException {
+        long inicio = System.nanoTime();
+        buffer.flip();
+        bytesEscritos += buffer.remaining();
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+        nanosVaciado += System.nanoTime() - inicio;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vaciar();
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+// Generador de carga para ServidorMatcheo: toma cuentas y nombres de sin_dni.txt
+// y manda consultas con N conexiones durante S segundos, después de un
+// calentamiento que no se mide.
+// Con --tasa R (pedidos/seg en total) la carga es de lazo abierto: cada pedido
+// tiene su hora programada y la latencia se cuenta desde esa hora, así una
+// demora del servidor no queda escondida porque el generador también se frena.
+// Sin --tasa, cada conexión manda el siguiente pedido apenas recibe la respuesta.
+// Informa pedidos/seg y latencia p50/p90/p99/p999 (histograma de MetricasCorrida);
+// con --p99-ms termina con código 1 si el p99 supera el objetivo. Con
+// --recargar-a SEG pide una recarga del índice a mitad de la medición, para ver
+// la latencia mientras se arma y se cambia el índice.
+// Uso: java GeneradorCarga URL [sin_dni.txt] [--conexiones N] [--segundos S] [--calentamiento S]
+//      [--lote N] [--tasa R] [--p99-ms X] [--recargar-a SEG]
+public class GeneradorCarga {
+
+    private static final int MAXIMO_MUESTRA = 100_000;
+    private static final Duration TIMEOUT_PEDIDO = Duration.ofSeconds(30);
+
+    public static void main(String[] args) {
+        List<String> posicionales = new ArrayList<>();
+        int conexiones = 8;
+        int segundos = 30;
+        int calentamiento = 5;
+        int lote = 1;
+        double tasa = 0;          // 0 = lazo cerrado
+        double p99Objetivo = 0;   // 0 = sin objetivo
+        int recargarA = -1;       // Segundos de medición (-1 = no recargar)
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--conexiones") && i + 1 < args.length) {
+                    conexiones = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--segundos") && i + 1 < args.length) {
+                    segundos = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--calentamiento") && i + 1 < args.length) {
+                    calentamiento = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--lote") && i + 1 < args.length) {
+                    lote = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--tasa") && i + 1 < args.length) {
+                    tasa = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--p99-ms") && i + 1 < args.length) {
+                    p99Objetivo = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--recargar-a") && i + 1 < args.length) {
+                    recargarA = Integer.parseInt(args[++i]);
+                } else {
+                    posicionales.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            posicionales.clear();
+        }
+        if (posicionales.isEmpty() || conexiones < 1 || segundos < 1 || calentamiento < 0 || lote < 1 ||
+            lote > ServidorMatcheo.MAXIMO_LOTE || tasa < 0) {
+            System.err.println("Uso: java GeneradorCarga URL [sin_dni.txt] [--conexiones N] [--segundos S]" +
+                " [--calentamiento S] [--lote N] [--tasa R] [--p99-ms X] [--recargar-a SEG]");
+            return;
+        }
+        String url = posicionales.get(0).replaceAll("/+$", "");
+        String archivo = posicionales.size() > 1 ? posicionales.get(1) : "sin_dni.txt";
+
+        try {
+            List<String[]> muestra = leerMuestra(archivo);
+            if (muestra.isEmpty()) {
+                System.err.println("Error: " + archivo + " no tiene filas");
+                return;
+            }
+            System.out.println("Muestra de " + muestra.size() + " filas de " + archivo + "; " + conexiones +
+                " conexiones, lote " + lote + ", " + (tasa > 0 ? String.format("%.0f pedidos/seg", tasa) : "lazo cerrado") +
+                ", " + calentamiento + " s de calentamiento y " + segundos + " s de medición");
+
+            boolean cumple = correr(url, muestra, conexiones, segundos, calentamiento, lote, tasa, p99Objetivo, recargarA);
+            if (!cumple) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static List<String[]> leerMuestra(String archivo) throws IOException {
+        List<String[]> muestra = new ArrayList<>();
+        try (EscanerCSV esc = new EscanerCSV(archivo)) {
+            esc.siguienteLinea(); // Saltar header
+            while (muestra.size() < MAXIMO_MUESTRA && esc.siguienteLinea()) {
+                if (esc.cantidadCampos() >= 2) {
+                    muestra.add(new String[] { esc.campo(0), esc.campo(1) });
+                }
+            }
+        }
+        return muestra;
+    }
+
+    private static boolean correr(String url, List<String[]> muestra, int conexiones, int segundos,
+                                  int calentamiento, int lote, double tasa, double p99Objetivo,
+                                  int recargarA) throws IOException {
+        HttpClient cliente = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+        long inicio = System.nanoTime();
+        long inicioMedicion = inicio + calentamiento * 1_000_000_000L;
+        long fin = inicioMedicion + segundos * 1_000_000_000L;
+        // Con tasa, cada conexión manda uno cada intervalo, desfasadas entre sí
+        long intervalo = tasa > 0 ? (long) (conexiones * 1e9 / tasa) : 0;
+
+        MetricasCorrida.Parciales[] latencias = new MetricasCorrida.Parciales[conexiones];
+        AtomicLong consultas = new AtomicLong();
+        AtomicLong errores = new AtomicLong();
+        AtomicReference<String> primerError = new AtomicReference<>();
+        Thread[] hilos = new Thread[conexiones];
+        for (int c = 0; c < conexiones; c++) {
+            MetricasCorrida.Parciales propias = new MetricasCorrida.Parciales();
+            latencias[c] = propias;
+            long desfase = intervalo * c / conexiones;
+            hilos[c] = new Thread(() -> {
+                Random azar = new Random();
+                long programado = inicio + desfase;
+                while (true) {
+                    if (intervalo > 0) {
+                        long espera = programado - System.nanoTime();
+                        if (espera > 0) {
+                            LockSupport.parkNanos(espera);
+                        }
+                    } else {
+                        programado = System.nanoTime();
+                    }
+                    if (programado >= fin) break;
+
+                    HttpRequest pedido = armarPedido(url, muestra, lote, azar);
+                    boolean ok;
+                    try {
+                        HttpResponse<String> respuesta = cliente.send(pedido, HttpResponse.BodyHandlers.ofString());
+                        ok = respuesta.statusCode() == 200;
+                        if (!ok) primerError.compareAndSet(null, "HTTP " + respuesta.statusCode());
+                    } catch (IOException e) {
+                        ok = false;
+                        primerError.compareAndSet(null, e.toString());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+
+                    if (programado >= inicioMedicion) {
+                        propias.registrarLatencia(System.nanoTime() - programado);
+                        if (ok) consultas.addAndGet(lote);
+                        else errores.incrementAndGet();
+                    }
+                    programado += intervalo;
+                }
+            }, "carga-" + c);
+            hilos[c].start();
+        }
+
+        if (recargarA >= 0) {
+            LockSupport.parkNanos(inicioMedicion + recargarA * 1_000_000_000L - System.nanoTime());
+            try {
+                HttpResponse<String> respuesta = cliente.send(HttpRequest.newBuilder(URI.create(url + "/recargar"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).timeout(TIMEOUT_PEDIDO).build(),
+                    HttpResponse.BodyHandlers.ofString());
+                System.out.println("Recarga pedida a los " + recargarA + " s: HTTP " + respuesta.statusCode());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (Thread hilo : hilos) {
+            try {
+                hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        MetricasCorrida.Parciales total = new MetricasCorrida.Parciales();
+        long pedidos = 0;
+        for (MetricasCorrida.Parciales parciales : latencias) {
+            total.sumar(parciales);
+        }
+        for (long cantidad : total.latencias) {
+            pedidos += cantidad;
+        }
+
+        double p99 = total.percentilLatencia(0.99) / 1e6;
+        System.out.println(String.format("Pedidos: %d (%.0f/seg), consultas: %d (%.0f/seg), errores: %d",
+            pedidos, pedidos / (double) segundos, consultas.get(), consultas.get() / (double) segundos, errores.get()));
+        System.out.println(String.format("Latencia ms: p50 %.3f  p90 %.3f  p99 %.3f  p999 %.3f  max %.3f",
+            total.percentilLatencia(0.50) / 1e6, total.percentilLatencia(0.90) / 1e6, p99,
+            total.percentilLatencia(0.999) / 1e6, total.latenciaMaxima / 1e6));
+        if (primerError.get() != null) {
+            System.out.println("Primer error: " + primerError.get());
+        }
+
+        boolean cumple = errores.get() == 0;
+        if (p99Objetivo > 0) {
+            cumple = cumple && p99 <= p99Objetivo;
+            System.out.println(String.format("Objetivo p99 <= %.3f ms: %s", p99Objetivo,
+                cumple ? "CUMPLE" : "NO CUMPLE"));
+        }
+        return cumple;
+    }
+
+    private static HttpRequest armarPedido(String url, List<String[]> muestra, int lote, Random azar) {
+        if (lote == 1) {
+            String[] fila = muestra.get(azar.nextInt(muestra.size()));
+            String uri = url + "/matchear?cuenta=" + URLEncoder.encode(fila[0], StandardCharsets.UTF_8) +
+                "&nombre=" + URLEncoder.encode(fila[1], StandardCharsets.UTF_8);
+            return HttpRequest.newBuilder(URI.create(uri)).GET().timeout(TIMEOUT_PEDIDO).build();
+        }
+
+        // Como sin_dni.txt: "cuenta";"nombre" en ISO-8859-1
+        StringBuilder cuerpo = new StringBuilder(lote * 40);
+        for (int i = 0; i < lote; i++) {
+            String[] fila = muestra.get(azar.nextInt(muestra.size()));
+            cuerpo.append('"').append(fila[0]).append("\";\"").append(fila[1]).append("\"\n");
+        }
+        return HttpRequest.newBuilder(URI.create(url + "/matchear"))
+            .POST(HttpRequest.BodyPublishers.ofString(cuerpo.toString(), StandardCharsets.ISO_8859_1))
+            .timeout(TIMEOUT_PEDIDO)
+            .build();
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.*;
+import java.util.*;
+
+// Generador determinístico de con_dni.txt y sin_dni.txt sintéticos para medir.
+// Mismo formato que los archivos reales: ISO-8859-1, campos entre comillas
+// separados por ';', cuentas con ceros a la izquierda y nombres en castellano con
+// acentos. En sin_dni.txt los nombres vienen con las variaciones habituales
+// (sin acentos, minúsculas, apellidos invertidos, errores de tipeo) y parte de
+// las cuentas no existen en con_dni.txt.
+// Uso: java GeneradorDatos [directorio] [filasConDNI] [filasSinDNI] [semilla]
+public class GeneradorDatos {
+
+    private static final String[] NOMBRES = {
+        "JUAN", "JOSÉ", "LUIS", "CARLOS", "JORGE", "MIGUEL", "ÁNGEL", "RAÚL", "RUBÉN", "JESÚS",
+        "ANDRÉS", "MARTÍN", "NICOLÁS", "SEBASTIÁN", "JOAQUÍN", "TOMÁS", "RAMÓN", "GASTÓN", "FABIÁN", "MATÍAS",
+        "MARÍA", "ANA", "LUCÍA", "SOFÍA", "INÉS", "BEATRIZ", "MÓNICA", "VERÓNICA", "ROCÍO", "MARTINA",
+        "VALENTINA", "CAMILA", "FLORENCIA", "JULIETA", "NOEMÍ", "BÁRBARA", "ESTEFANÍA", "MAGDALENA", "JIMENA", "PAULA"
+    };
+
+    private static final String[] APELLIDOS = {
+        "GONZÁLEZ", "RODRÍGUEZ", "GÓMEZ", "FERNÁNDEZ", "LÓPEZ", "DÍAZ", "MARTÍNEZ", "PÉREZ", "GARCÍA", "SÁNCHEZ",
+        "ROMERO", "SOSA", "ÁLVAREZ", "TORRES", "RUIZ", "RAMÍREZ", "FLORES", "BENÍTEZ", "ACOSTA", "MEDINA",
+        "HERRERA", "SUÁREZ", "AGUIRRE", "GIMÉNEZ", "GUTIÉRREZ", "PEREYRA", "ROJAS", "MOLINA", "CASTRO", "ORTIZ",
+        "NÚÑEZ", "MUÑOZ", "IBÁÑEZ", "PEÑA", "CASTAÑO", "ORDÓÑEZ", "MÉNDEZ", "VÁZQUEZ", "DOMÍNGUEZ", "SÁENZ",
+        "DE LA FUENTE", "DEL VALLE", "SAN MARTÍN", "MÜLLER", "GÜEMES", "ARGÜELLO", "D'ALESSANDRO", "O'BRIEN"
+    };
+
+    // Los COD de encriptar_parte.py (ENTIDADES_PERMITIDAS) más algunos que no están
+    private static final String[] CODS = {
+        "002", "004", "005", "007", "015", "024", "027", "031", "035", "036", "040", "042", "048",
+        "066", "069", "071", "074", "084", "090", "092", "093", "101", "106", "119", "129", "131",
+        "139", "140", "154", "160", "161", "163", "165", "167", "168", "170", "173", "176", "187",
+        "196", "218", "227", "234", "242", "243", "244", "247", "270", "300", "310", "999"
+    };
+
+    private static final int PORCENTAJE_CUENTAS_REPETIDAS = 2;   // En con_dni.txt (quedan como candidatos)
+    private static final int PORCENTAJE_NO_ENCONTRADAS = 30;     // En sin_dni.txt
+
+    public static void main(String[] args) {
+        String directorio = args.length > 0 ? args[0] : ".";
+        int filasConDNI = args.length > 1 ? Integer.parseInt(args[1]) : 2_700_000;
+        int filasSinDNI = args.length > 2 ? Integer.parseInt(args[2]) : 400_000;
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        try {
+            long inicio = System.nanoTime();
+            generar(directorio, filasConDNI, filasSinDNI, semilla);
+            System.out.println("Generados " + filasConDNI + " registros con DNI y " + filasSinDNI +
+                " sin DNI en " + directorio + " (" + (System.nanoTime() - inicio) / 1_000_000 + " ms)");
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Escribe directorio/con_dni.txt y directorio/sin_dni.txt; con la misma semilla
+    // el resultado es siempre el mismo
+    public static void generar(String directorio, int filasConDNI, int filasSinDNI, long semilla) throws IOException {
+        new File(directorio).mkdirs();
+        Random random = new Random(semilla);
+
+        long[] cuentas = new long[filasConDNI];
+        String[] nombres = new String[filasConDNI];
+
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directorio, "con_dni.txt")), "ISO-8859-1"), 1 << 16)) {
+            bw.write("\"cuenta\";\"tipo\";\"cod\";\"nombreyapellido\";\"dni\"\r\n");
+
+            for (int i = 0; i < filasConDNI; i++) {
+                boolean repetida = i > 0 && random.nextInt(100) < PORCENTAJE_CUENTAS_REPETIDAS;
+                cuentas[i] = repetida ? cuentas[random.nextInt(i)] : 1_000_000L + (long) i * 7 + random.nextInt(7);
+                nombres[i] = nombreCompleto(random);
+
+                bw.write(String.format("\"%012d\";\"%s\";\"%s\";\"%s\";\"%09d\"\r\n",
+                    cuentas[i], random.nextInt(10) == 0 ? "CC" : "CA", CODS[random.nextInt(CODS.length)],
+                    nombres[i], 5_000_000 + random.nextInt(45_000_000)));
+            }
+        }
+
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directorio, "sin_dni.txt")), "ISO-8859-1"), 1 << 16)) {
+            bw.write("\"cuenta\";\"nombre\"\r\n");
+
+            for (int i = 0; i < filasSinDNI; i++) {
+                long cuenta;
+                String nombre;
+                if (filasConDNI == 0 || random.nextInt(100) < PORCENTAJE_NO_ENCONTRADAS) {
+                    // Cuentas que no están en con_dni.txt (ahí todas empiezan en 1.000.000)
+                    cuenta = random.nextInt(1_000_000);
+                    nombre = nombreCompleto(random);
+                } else {
+                    int j = random.nextInt(filasConDNI);
+                    cuenta = cuentas[j];
+                    nombre = variar(nombres[j], random);
+                }
+
+                // Las cuentas de sin_dni vienen con o sin ceros a la izquierda
+                String cuentaTexto = random.nextBoolean() ? String.format("%012d", cuenta) : Long.toString(cuenta);
+                bw.write("\"" + cuentaTexto + "\";\"" + nombre + "\"\r\n");
+            }
+        }
+    }
+
+    // APELLIDO [APELLIDO] NOMBRE [NOMBRE]
+    private static String nombreCompleto(Random random) {
+        StringBuilder sb = new StringBuilder(APELLIDOS[random.nextInt(APELLIDOS.length)]);
+        if (random.nextInt(3) == 0) {
+            sb.append(' ').append(APELLIDOS[random.nextInt(APELLIDOS.length)]);
+        }
+        sb.append(' ').append(NOMBRES[random.nextInt(NOMBRES.length)]);
+        if (random.nextBoolean()) {
+            sb.append(' ').append(NOMBRES[random.nextInt(NOMBRES.length)]);
+        }
+        return sb.toString();
+    }
+
+    // El mismo nombre como suele venir cargado en otro sistema
+    private static String variar(String nombre, Random random) {
+        switch (random.nextInt(8)) {
+            case 0:  // Sin acentos
+                return CanonizadorLatin1.normalizar(nombre);
+            case 1:  // Minúsculas
+                return nombre.toLowerCase(Locale.ROOT);
+            case 2: {  // Nombre antes que el apellido
+                String[] palabras = nombre.split(" ");
+                return palabras[palabras.length - 1] + " " + String.join(" ", Arrays.copyOf(palabras, palabras.length - 1));
+            }
+            case 3: {  // Falta la última palabra
+                int espacio = nombre.lastIndexOf(' ');
+                return espacio > 0 ? nombre.substring(0, espacio) : nombre;
+            }
+            case 4: {  // Error de tipeo
+                char[] chars = nombre.toCharArray();
+                int i = random.nextInt(chars.length);
+                if (chars[i] != ' ') {
+                    chars[i] = (char) ('A' + random.nextInt(26));
+                }
+                return new String(chars);
+            }
+            case 5:  // Espacios de más
+                return " " + nombre.replace(" ", "  ") + " ";
+            case 6:  // Otra persona
+                return nombreCompleto(random);
+            default:
+                return nombre;
+        }
+    }
+}
@@ -0,0 +1,615 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Índice compacto de cuentas para reemplazar el HashMap<String, PersonaConDNI>.
+// Las cuentas numéricas se guardan como long en una tabla de direccionamiento
+// abierto y los datos de cada persona van empaquetados en un arena de bytes
+// (Latin-1), direccionados por offset. Un registro ocupa:
+//   [largo cuenta][cuenta][largo cod][cod][largo nombre][nombre][largo dni][dni]
+// con los largos en 2 bytes.
+// El nombre se normaliza y se separa en palabras una sola vez al cargar: cada
+// palabra va al DiccionarioTokens y el registro guarda sus ids distintos
+// ordenados (en un arena de ints) más el orden original como índices de 1 byte
+// (o 2 si hay más de 255 palabras distintas) dentro del campo nombre, junto
+// con el largo del nombre normalizado (para acotar la similitud sin armarlo).
+// Una cuenta que aparece en varias filas distintas de con_dni.txt (otro COD, o
+// cuentas que coinciden al quitar los ceros) conserva todos sus candidatos: su
+// slot apunta a un tramo del array multiples, [cantidad][registros en orden de
+// archivo], en vez de a un registro. Las filas repetidas idénticas cuentan una vez.
+public class IndiceCuentas {
+
+    private static final long LIBRE = -1L;           // Las claves numéricas siempre son >= 0
+    private static final int MAX_DIGITOS_LONG = 18;  // Hasta 18 dígitos entran en un long sin overflow
+    private static final int MAX_CAMPO = 0xFFFF;
+    private static final int SIN_ANTERIOR = -1;
+
+    // Tabla de direccionamiento abierto (sondeo lineal). El valor es el registro
+    // o, si la cuenta tiene varios candidatos, -(2 + inicio del tramo en multiples)
+    private long[] claves;
+    private int[] registroDeClave;
+    private int ocupados;
+
+    // Candidatos de las cuentas con más de uno; se arman en finalizarCarga a partir
+    // de anteriorMismaCuenta (el registro anterior de la misma cuenta durante la carga)
+    private int[] multiples = new int[64];
+    private int finMultiples;
+    private int cuentasAmbiguas;
+    private int[] anteriorMismaCuenta;
+    private int[] tramo = new int[16];
+
+    // Cuentas que no son puramente numéricas (raras): van a un mapa aparte
+    private final Map<String, Integer> clavesTexto = new HashMap<>();
+
+    // Arena de registros
+    private byte[] datos;
+    private int finDatos;
+    private int[] inicioRegistro;
+    private int cantidadRegistros;
+
+    // Palabras de cada nombre: ids distintos ordenados de palabras[inicioPalabras[r], inicioPalabras[r + 1])
+    private DiccionarioTokens diccionario = new DiccionarioTokens();
+    private int[] palabras;
+    private int finPalabras;
+    private int[] inicioPalabras;
+    private final StringBuilder nombreNormalizado = new StringBuilder();
+
+    public IndiceCuentas() {
+        this(1 << 16);
+    }
+
+    public IndiceCuentas(int capacidadEsperada) {
+        int capacidadTabla = Integer.highestOneBit(Math.max(16, capacidadEsperada * 4 / 3)) << 1;
+        claves = new long[capacidadTabla];
+        Arrays.fill(claves, LIBRE);
+        registroDeClave = new int[capacidadTabla];
+        inicioRegistro = new int[Math.max(16, capacidadEsperada)];
+        anteriorMismaCuenta = new int[inicioRegistro.length];
+        datos = new byte[Math.max(1024, capacidadEsperada * 32)];
+        palabras = new int[Math.max(64, capacidadEsperada * 3)];
+        inicioPalabras = new int[inicioRegistro.length + 1];
+    }
+
+    // Cantidad de cuentas distintas (igual que Map.size())
+    public int size() {
+        return ocupados + clavesTexto.size();
+    }
+
+    // Agrega una persona; si la cuenta ya existía, queda como su candidato más reciente
+    public void agregar(String cuentaNorm, String cod, String nombreyapellido, String dni) {
+        byte[] orden = agregarPalabras(MatchearDNI.normalizarTexto(nombreyapellido));
+        asegurarLugarRegistro(8 + cuentaNorm.length() + cod.length() + orden.length + dni.length());
+
+        int registro = cantidadRegistros++;
+        inicioRegistro[registro] = finDatos;
+        escribirCampo(cuentaNorm);
+        escribirCampo(cod);
+        escribirCampo(orden);
+        escribirCampo(dni);
+
+        long clave = claveNumerica(cuentaNorm);
+        if (clave == LIBRE) {
+            enlazar(registro, clavesTexto.put(cuentaNorm, registro));
+        } else {
+            asignarClave(clave, registro);
+        }
+    }
+
+    // Agrega una persona tomando los campos directamente de la línea actual del
+    // escáner; el nombre se normaliza desde los bytes sin armar Strings intermedios
+    public void agregar(EscanerCSV linea, int campoCuenta, int campoCod, int campoNombre, int campoDni) {
+        nombreNormalizado.setLength(0);
+        byte[] orden = agregarPalabras(CanonizadorLatin1.normalizar(linea, campoNombre, nombreNormalizado));
+        asegurarLugarRegistro(8 + linea.largoCampo(campoCuenta) + linea.largoCampo(campoCod)
+            + orden.length + linea.largoCampo(campoDni));
+
+        int registro = cantidadRegistros++;
+        inicioRegistro[registro] = finDatos;
+        int inicioCuenta = finDatos + 2;
+        copiarCampo(linea, campoCuenta);
+        int finCuenta = finDatos;
+        copiarCampo(linea, campoCod);
+        escribirCampo(orden);
+        copiarCampo(linea, campoDni);
+
+        // Normalizar la cuenta (sin ceros a la izquierda) sobre los bytes ya copiados
+        int inicioNorm = inicioCuenta;
+        while (inicioNorm < finCuenta - 1 && datos[inicioNorm] == '0') {
+            inicioNorm++;
+        }
+        long clave = claveNumerica(datos, inicioNorm, finCuenta);
+        if (clave == LIBRE) {
+            String cuentaNorm = MatchearDNI.normalizarCuenta(
+                new String(datos, inicioCuenta, finCuenta - inicioCuenta, StandardCharsets.ISO_8859_1));
+            enlazar(registro, clavesTexto.put(cuentaNorm, registro));
+        } else {
+            asignarClave(clave, registro);
+        }
+    }
+
+    // Devuelve el número de registro de la cuenta, o -1 si no está. Si tiene
+    // varios candidatos, el de la última fila (el que quedaba con Map.put).
+    public int buscar(String cuentaNorm) {
+        int referencia = buscarCandidatos(cuentaNorm);
+        return referencia >= -1 ? referencia : candidato(referencia, cantidadCandidatos(referencia) - 1);
+    }
+
+    // -1 si la cuenta no está; si no, una referencia a sus candidatos para
+    // cantidadCandidatos y candidato
+    public int buscarCandidatos(String cuentaNorm) {
+        long clave = claveNumerica(cuentaNorm);
+        if (clave == LIBRE) {
+            Integer referencia = clavesTexto.get(cuentaNorm);
+            return referencia == null ? -1 : referencia;
+        }
+        int slot = buscarSlot(clave);
+        return claves[slot] == LIBRE ? -1 : registroDeClave[slot];
+    }
+
+    public int cantidadCandidatos(int referencia) {
+        return referencia >= 0 ? 1 : multiples[-referencia - 2];
+    }
+
+    // Registro del i-ésimo candidato, en orden de archivo
+    public int candidato(int referencia, int i) {
+        return referencia >= 0 ? referencia : multiples[-referencia - 1 + i];
+    }
+
+    // Cuentas con más de un candidato distinto
+    public int cuentasAmbiguas() {
+        return cuentasAmbiguas;
+    }
+
+    // Mismo contrato que dniDict.get(cuentaNorm): null si la cuenta no existe.
+    // El nombre devuelto es el ya normalizado (ver nombre(registro)).
+    public MatchearDNI.PersonaConDNI get(String cuentaNorm) {
+        int registro = buscar(cuentaNorm);
+        if (registro < 0) return null;
+        return new MatchearDNI.PersonaConDNI(cod(registro), nombre(registro), dni(registro));
+    }
+
+    public String cuenta(int registro) {
+        return leerCampo(registro, 0);
+    }
+
+    public String cod(int registro) {
+        return leerCampo(registro, 1);
+    }
+
+    // Nombre normalizado (normalizarTexto), rearmado a partir de sus palabras
+    public String nombre(int registro) {
+        return armarNombre(registro, new StringBuilder()).toString();
+    }
+
+    // Agrega el nombre normalizado del registro a destino, sin crear Strings
+    public StringBuilder armarNombre(int registro, StringBuilder destino) {
+        int pos = posicionCampo(registro, 2);
+        int largo = largoEn(pos);
+        int bytesPorIndice = datos[pos + 2];
+        int base = inicioPalabras[registro];
+
+        for (int i = pos + 5; i < pos + 2 + largo; i += bytesPorIndice) {
+            int indice = bytesPorIndice == 1
+                ? datos[i] & 0xFF
+                : ((datos[i] & 0xFF) << 8) | (datos[i + 1] & 0xFF);
+            if (i > pos + 5) {
+                destino.append(' ');
+            }
+            destino.append(diccionario.texto(palabras[base + indice]));
+        }
+        return destino;
+    }
+
+    // Largo del nombre normalizado sin armarlo, o -1 si no entra en el campo
+    public int largoNombre(int registro) {
+        int largo = largoEn(posicionCampo(registro, 2) + 3);
+        return largo == MAX_CAMPO ? -1 : largo;
+    }
+
+    // Cantidad de palabras distintas del nombre (como el tamaño del HashSet de split(" "))
+    public int palabrasDistintas(int registro) {
+        return inicioPalabras[registro + 1] - inicioPalabras[registro];
+    }
+
+    // Id de la i-ésima palabra distinta del registro (en orden de id)
+    public int palabraDistinta(int registro, int i) {
+        return palabras[inicioPalabras[registro] + i];
+    }
+
+    // Cuántos de los ids (ordenados y sin repetir) aparecen en el nombre del registro
+    public int palabrasEnComun(int registro, int[] idsOrdenados) {
+        int i = inicioPalabras[registro];
+        int fin = inicioPalabras[registro + 1];
+        int j = 0;
+        int comunes = 0;
+        while (i < fin && j < idsOrdenados.length) {
+            int a = palabras[i];
+            int b = idsOrdenados[j];
+            if (a == b) {
+                comunes++;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return comunes;
+    }
+
+    public DiccionarioTokens diccionario() {
+        return diccionario;
+    }
+
+    public int cantidadRegistros() {
+        return cantidadRegistros;
+    }
+
+    // Registros que son candidatos de alguna cuenta (las filas repetidas
+    // idénticas a una posterior de la misma cuenta quedan afuera)
+    public BitSet registrosVigentes() {
+        BitSet vigentes = new BitSet(cantidadRegistros);
+        for (int slot = 0; slot < claves.length; slot++) {
+            if (claves[slot] != LIBRE) {
+                marcarCandidatos(registroDeClave[slot], vigentes);
+            }
+        }
+        for (int referencia : clavesTexto.values()) {
+            marcarCandidatos(referencia, vigentes);
+        }
+        return vigentes;
+    }
+
+    private void marcarCandidatos(int referencia, BitSet vigentes) {
+        for (int i = 0; i < cantidadCandidatos(referencia); i++) {
+            vigentes.set(candidato(referencia, i));
+        }
+    }
+
+    public String dni(int registro) {
+        return leerCampo(registro, 3);
+    }
+
+    // Agrupa los candidatos de las cuentas repetidas y libera la capacidad
+    // sobrante de los arrays una vez terminada la carga
+    public void finalizarCarga() {
+        for (int slot = 0; slot < claves.length; slot++) {
+            if (claves[slot] != LIBRE) {
+                registroDeClave[slot] = agruparCandidatos(registroDeClave[slot]);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : clavesTexto.entrySet()) {
+            entry.setValue(agruparCandidatos(entry.getValue()));
+        }
+        multiples = Arrays.copyOf(multiples, finMultiples);
+        anteriorMismaCuenta = null;
+        tramo = null;
+
+        datos = Arrays.copyOf(datos, finDatos);
+        inicioRegistro = Arrays.copyOf(inicioRegistro, cantidadRegistros);
+        palabras = Arrays.copyOf(palabras, finPalabras);
+        inicioPalabras = Arrays.copyOf(inicioPalabras, cantidadRegistros + 1);
+    }
+
+    // Bytes ocupados por el índice (sin contar el mapa de claves no numéricas)
+    public long bytesOcupados() {
+        return 8L * claves.length + 4L * registroDeClave.length + 4L * multiples.length
+            + datos.length + 4L * inicioRegistro.length
+            + 4L * palabras.length + 4L * inicioPalabras.length
+            + diccionario.bytesOcupados();
+    }
+
+    // Vuelca el índice (ya finalizado) al snapshot, en el orden que espera leer()
+    void escribir(SnapshotIndice.Escritor escritor) throws IOException {
+        escritor.escribirInt(ocupados);
+        escritor.escribirLongs(claves, claves.length);
+        escritor.escribirInts(registroDeClave, registroDeClave.length);
+        escritor.escribirInts(multiples, multiples.length);
+        escritor.escribirInt(cuentasAmbiguas);
+
+        int[] registrosTexto = new int[clavesTexto.size()];
+        StringBuilder cuentasTexto = new StringBuilder();
+        int[] finesTexto = new int[clavesTexto.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : clavesTexto.entrySet()) {
+            cuentasTexto.append(entry.getKey());
+            finesTexto[i] = cuentasTexto.length();
+            registrosTexto[i++] = entry.getValue();
+        }
+        char[] charsTexto = cuentasTexto.toString().toCharArray();
+        escritor.escribirChars(charsTexto, charsTexto.length);
+        escritor.escribirInts(finesTexto, finesTexto.length);
+        escritor.escribirInts(registrosTexto, registrosTexto.length);
+
+        escritor.escribirBytes(datos, finDatos);
+        escritor.escribirInts(inicioRegistro, cantidadRegistros);
+        escritor.escribirInts(palabras, finPalabras);
+        escritor.escribirInts(inicioPalabras, cantidadRegistros + 1);
+        diccionario.escribir(escritor);
+    }
+
+    static IndiceCuentas leer(SnapshotIndice.Lector lector) throws IOException {
+        IndiceCuentas indice = new IndiceCuentas(16);
+        indice.ocupados = lector.leerInt();
+        indice.claves = lector.leerLongs();
+        indice.registroDeClave = lector.leerInts();
+        indice.multiples = lector.leerInts();
+        indice.cuentasAmbiguas = lector.leerInt();
+        indice.anteriorMismaCuenta = null;
+
+        char[] charsTexto = lector.leerChars();
+        int[] finesTexto = lector.leerInts();
+        int[] registrosTexto = lector.leerInts();
+        int inicio = 0;
+        for (int i = 0; i < finesTexto.length; i++) {
+            indice.clavesTexto.put(new String(charsTexto, inicio, finesTexto[i] - inicio), registrosTexto[i]);
+            inicio = finesTexto[i];
+        }
+
+        indice.datos = lector.leerBytes();
+        indice.finDatos = indice.datos.length;
+        indice.inicioRegistro = lector.leerInts();
+        indice.cantidadRegistros = indice.inicioRegistro.length;
+        indice.palabras = lector.leerInts();
+        indice.finPalabras = indice.palabras.length;
+        indice.inicioPalabras = lector.leerInts();
+        indice.diccionario = DiccionarioTokens.leer(lector);
+
+        if (indice.registroDeClave.length != indice.claves.length
+                || indice.inicioPalabras.length != indice.cantidadRegistros + 1) {
+            throw new IOException("Snapshot inconsistente");
+        }
+        return indice;
+    }
+
+    // Convierte la cuenta normalizada a long; LIBRE si no es puramente numérica
+    static long claveNumerica(String cuentaNorm) {
+        int largo = cuentaNorm.length();
+        if (largo == 0 || largo > MAX_DIGITOS_LONG) return LIBRE;
+        // Con ceros a la izquierda dos textos distintos darían el mismo long
+        if (largo > 1 && cuentaNorm.charAt(0) == '0') return LIBRE;
+
+        long valor = 0;
+        for (int i = 0; i < largo; i++) {
+            char c = cuentaNorm.charAt(i);
+            if (c < '0' || c > '9') return LIBRE;
+            valor = valor * 10 + (c - '0');
+        }
+        return valor;
+    }
+
+    // Igual que claveNumerica(String) pero sobre bytes ya normalizados
+    private static long claveNumerica(byte[] bytes, int inicio, int fin) {
+        int largo = fin - inicio;
+        if (largo == 0 || largo > MAX_DIGITOS_LONG) return LIBRE;
+        if (largo > 1 && bytes[inicio] == '0') return LIBRE;
+
+        long valor = 0;
+        for (int i = inicio; i < fin; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') return LIBRE;
+            valor = valor * 10 + (b - '0');
+        }
+        return valor;
+    }
+
+    private void asignarClave(long clave, int registro) {
+        if ((ocupados + 1) * 4L > claves.length * 3L) {  // Factor de carga 0.75
+            agrandarTabla();
+        }
+        int slot = buscarSlot(clave);
+        if (claves[slot] == LIBRE) {
+            claves[slot] = clave;
+            ocupados++;
+            enlazar(registro, null);
+        } else {
+            enlazar(registro, registroDeClave[slot]);
+        }
+        registroDeClave[slot] = registro;
+    }
+
+    // Referencia a los candidatos distintos de la cuenta cuyo último registro
+    // es ultimo; si es uno solo, el registro mismo
+    private int agruparCandidatos(int ultimo) {
+        if (anteriorMismaCuenta[ultimo] == SIN_ANTERIOR) {
+            return ultimo;
+        }
+        // De la última fila hacia atrás: de las repetidas idénticas queda la más reciente
+        int cantidad = 0;
+        for (int r = ultimo; r != SIN_ANTERIOR; r = anteriorMismaCuenta[r]) {
+            boolean repetido = false;
+            for (int i = 0; i < cantidad && !repetido; i++) {
+                repetido = mismoContenido(tramo[i], r);
+            }
+            if (!repetido) {
+                if (cantidad == tramo.length) {
+                    tramo = Arrays.copyOf(tramo, cantidad * 2);
+                }
+                tramo[cantidad++] = r;
+            }
+        }
+        if (cantidad == 1) {
+            return ultimo;
+        }
+
+        if (finMultiples + cantidad + 1 > multiples.length) {
+            multiples = Arrays.copyOf(multiples, Math.max(multiples.length * 2, finMultiples + cantidad + 1));
+        }
+        int referencia = -(2 + finMultiples);
+        multiples[finMultiples++] = cantidad;
+        for (int i = cantidad - 1; i >= 0; i--) {
+            multiples[finMultiples++] = tramo[i];  // En orden de archivo
+        }
+        cuentasAmbiguas++;
+        return referencia;
+    }
+
+    // Durante la carga, cada registro recuerda al anterior de su misma cuenta
+    private void enlazar(int registro, Integer anterior) {
+        anteriorMismaCuenta[registro] = anterior == null ? SIN_ANTERIOR : anterior;
+    }
+
+    // Mismo cod, nombre normalizado y dni
+    private boolean mismoContenido(int a, int b) {
+        int desdeA = posicionCampo(a, 1);
+        int desdeB = posicionCampo(b, 1);
+        int finA = posicionCampo(a, 3);
+        finA += 2 + largoEn(finA);
+        int finB = posicionCampo(b, 3);
+        finB += 2 + largoEn(finB);
+        // El campo nombre son índices dentro de las palabras distintas: hay que comparar las dos cosas
+        return Arrays.equals(datos, desdeA, finA, datos, desdeB, finB)
+            && Arrays.equals(palabras, inicioPalabras[a], inicioPalabras[a + 1],
+                palabras, inicioPalabras[b], inicioPalabras[b + 1]);
+    }
+
+    private static int hash(long clave) {
+        // Finalizador de MurmurHash3
+        clave ^= clave >>> 33;
+        clave *= 0xff51afd7ed558ccdL;
+        clave ^= clave >>> 33;
+        clave *= 0xc4ceb9fe1a85ec53L;
+        clave ^= clave >>> 33;
+        return (int) clave;
+    }
+
+    private int buscarSlot(long clave) {
+        int mascara = claves.length - 1;
+        int slot = hash(clave) & mascara;
+        while (claves[slot] != LIBRE && claves[slot] != clave) {
+            slot = (slot + 1) & mascara;
+        }
+        return slot;
+    }
+
+    private void agrandarTabla() {
+        long[] viejasClaves = claves;
+        int[] viejosRegistros = registroDeClave;
+
+        claves = new long[viejasClaves.length * 2];
+        Arrays.fill(claves, LIBRE);
+        registroDeClave = new int[viejasClaves.length * 2];
+
+        for (int i = 0; i < viejasClaves.length; i++) {
+            if (viejasClaves[i] != LIBRE) {
+                int slot = buscarSlot(viejasClaves[i]);
+                claves[slot] = viejasClaves[i];
+                registroDeClave[slot] = viejosRegistros[i];
+            }
+        }
+    }
+
+    // Agrega los ids distintos ordenados del nombre normalizado al arena de palabras
+    // y devuelve el campo con el orden original:
+    // [bytes por índice][largo del nombre normalizado (2 bytes)][índices...]
+    private byte[] agregarPalabras(CharSequence normalizado) {
+        int[] secuencia = diccionario.idsDePalabras(normalizado, true);
+
+        int[] distintos = secuencia.clone();
+        Arrays.sort(distintos);
+        int cantidadDistintos = 0;
+        for (int i = 0; i < distintos.length; i++) {
+            if (i == 0 || distintos[i] != distintos[i - 1]) {
+                distintos[cantidadDistintos++] = distintos[i];
+            }
+        }
+
+        if (finPalabras + cantidadDistintos > palabras.length) {
+            palabras = Arrays.copyOf(palabras, Math.max(palabras.length * 2, finPalabras + cantidadDistintos));
+        }
+        if (cantidadRegistros + 2 > inicioPalabras.length) {
+            inicioPalabras = Arrays.copyOf(inicioPalabras, inicioPalabras.length * 2);
+        }
+        System.arraycopy(distintos, 0, palabras, finPalabras, cantidadDistintos);
+        inicioPalabras[cantidadRegistros] = finPalabras;
+        finPalabras += cantidadDistintos;
+        inicioPalabras[cantidadRegistros + 1] = finPalabras;
+
+        int bytesPorIndice = cantidadDistintos > 0xFF ? 2 : 1;
+        byte[] orden = new byte[3 + secuencia.length * bytesPorIndice];
+        orden[0] = (byte) bytesPorIndice;
+        int largoNombre = Math.max(0, secuencia.length - 1);  // Los espacios entre palabras, como armarNombre
+        for (int i = 0; i < secuencia.length; i++) {
+            largoNombre += diccionario.texto(secuencia[i]).length();
+            int indice = Arrays.binarySearch(distintos, 0, cantidadDistintos, secuencia[i]);
+            if (bytesPorIndice == 1) {
+                orden[3 + i] = (byte) indice;
+            } else {
+                orden[3 + 2 * i] = (byte) (indice >>> 8);
+                orden[4 + 2 * i] = (byte) indice;
+            }
+        }
+        largoNombre = Math.min(largoNombre, MAX_CAMPO);
+        orden[1] = (byte) (largoNombre >>> 8);
+        orden[2] = (byte) largoNombre;
+        return orden;
+    }
+
+    private void asegurarLugarRegistro(int necesario) {
+        if (cantidadRegistros == inicioRegistro.length) {
+            inicioRegistro = Arrays.copyOf(inicioRegistro, cantidadRegistros * 2);
+            anteriorMismaCuenta = Arrays.copyOf(anteriorMismaCuenta, cantidadRegistros * 2);
+        }
+        if (finDatos + (long) necesario > datos.length) {
+            long nuevoLargo = Math.max(2L * datos.length, (long) finDatos + necesario);
+            if ((long) finDatos + necesario > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("El índice supera los 2 GB de datos");
+            }
+            datos = Arrays.copyOf(datos, (int) Math.min(nuevoLargo, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    // Los archivos se leen en ISO-8859-1, así que cada char entra en un byte.
+    // Lo que no entra se guarda como '?', igual que al escribir en Latin-1.
+    private void escribirCampo(String valor) {
+        int largo = valor.length();
+        if (largo > MAX_CAMPO) {
+            throw new IllegalArgumentException("Campo demasiado largo (" + largo + " caracteres)");
+        }
+        datos[finDatos++] = (byte) (largo >>> 8);
+        datos[finDatos++] = (byte) largo;
+        for (int i = 0; i < largo; i++) {
+            char c = valor.charAt(i);
+            datos[finDatos++] = (byte) (c <= 0xFF ? c : '?');
+        }
+    }
+
+    private void escribirCampo(byte[] valor) {
+        if (valor.length > MAX_CAMPO) {
+            throw new IllegalArgumentException("Campo demasiado largo (" + valor.length + " bytes)");
+        }
+        datos[finDatos++] = (byte) (valor.length >>> 8);
+        datos[finDatos++] = (byte) valor.length;
+        System.arraycopy(valor, 0, datos, finDatos, valor.length);
+        finDatos += valor.length;
+    }
+
+    private void copiarCampo(EscanerCSV linea, int campo) {
+        int largo = linea.largoCampo(campo);
+        if (largo > MAX_CAMPO) {
+            throw new IllegalArgumentException("Campo demasiado largo (" + largo + " caracteres)");
+        }
+        datos[finDatos++] = (byte) (largo >>> 8);
+        datos[finDatos++] = (byte) largo;
+        finDatos += linea.copiarCampo(campo, datos, finDatos);
+    }
+
+    private String leerCampo(int registro, int campo) {
+        int pos = posicionCampo(registro, campo);
+        int largo = largoEn(pos);
+        return new String(datos, pos + 2, largo, StandardCharsets.ISO_8859_1);
+    }
+
+    private int posicionCampo(int registro, int campo) {
+        int pos = inicioRegistro[registro];
+        for (int i = 0; i < campo; i++) {
+            pos += 2 + largoEn(pos);
+        }
+        return pos;
+    }
+
+    private int largoEn(int pos) {
+        return ((datos[pos] & 0xFF) << 8) | (datos[pos + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.*;
+
+// Índice secundario por nombre para las cuentas que no aparecen en con_dni.
+// Es un índice invertido palabra -> registros armado sobre los ids del
+// DiccionarioTokens (listas contiguas en dos arrays de int). Para un nombre se
+// recorren primero las listas de sus palabras menos frecuentes, se cuenta cuántas
+// palabras comparte cada registro y solo los que más comparten se puntúan con
+// similitudNombre. Así se evita comparar contra los 2.7M nombres.
+public class IndiceDifuso {
+
+    private static final int MAX_REGISTROS_VISITADOS = 20_000;  // Tope de entradas de listas por consulta
+    private static final int MAX_CANDIDATOS_A_PUNTUAR = 64;
+
+    // Candidato devuelto por una búsqueda
+    public static class Candidato {
+        public final int registro;
+        public final double similitud;
+
+        Candidato(int registro, double similitud) {
+            this.registro = registro;
+            this.similitud = similitud;
+        }
+    }
+
+    // Contador de palabras compartidas por registro, reutilizable por hilo
+    private static class Contador {
+        int[] registros = new int[1 << 16];   // Slots con registro + 1 (0 = libre)
+        int[] cuentas = new int[1 << 16];
+        int[] usados = new int[MAX_REGISTROS_VISITADOS];
+        int cantidadUsados;
+
+        void sumar(int registro) {
+            int mascara = registros.length - 1;
+            int slot = (registro * 0x9E3779B9) >>> 16 & mascara;
+            while (registros[slot] != 0 && registros[slot] != registro + 1) {
+                slot = (slot + 1) & mascara;
+            }
+            if (registros[slot] == 0) {
+                registros[slot] = registro + 1;
+                usados[cantidadUsados++] = slot;
+            }
+            cuentas[slot]++;
+        }
+
+        void limpiar() {
+            for (int i = 0; i < cantidadUsados; i++) {
+                registros[usados[i]] = 0;
+                cuentas[usados[i]] = 0;
+            }
+            cantidadUsados = 0;
+        }
+    }
+
+    private static final ThreadLocal<Contador> CONTADORES = ThreadLocal.withInitial(Contador::new);
+
+    private final IndiceCuentas indice;
+    private final int candidatosPorConsulta;
+
+    // Registros que contienen la palabra p: registros[inicioLista[p], inicioLista[p + 1])
+    private final int[] inicioLista;
+    private final int[] registros;
+
+    public IndiceDifuso(IndiceCuentas indice, int candidatosPorConsulta) {
+        this.indice = indice;
+        this.candidatosPorConsulta = candidatosPorConsulta;
+
+        // Solo entran los registros vigentes (los reemplazados por otra fila con la misma cuenta no)
+        BitSet vigentes = indice.registrosVigentes();
+        int cantidadPalabras = indice.diccionario().size();
+
+        inicioLista = new int[cantidadPalabras + 1];
+        for (int r = vigentes.nextSetBit(0); r >= 0; r = vigentes.nextSetBit(r + 1)) {
+            for (int i = 0; i < indice.palabrasDistintas(r); i++) {
+                inicioLista[indice.palabraDistinta(r, i) + 1]++;
+            }
+        }
+        for (int p = 0; p < cantidadPalabras; p++) {
+            inicioLista[p + 1] += inicioLista[p];
+        }
+
+        registros = new int[inicioLista[cantidadPalabras]];
+        int[] siguiente = Arrays.copyOf(inicioLista, cantidadPalabras);
+        for (int r = vigentes.nextSetBit(0); r >= 0; r = vigentes.nextSetBit(r + 1)) {
+            for (int i = 0; i < indice.palabrasDistintas(r); i++) {
+                registros[siguiente[indice.palabraDistinta(r, i)]++] = r;
+            }
+        }
+    }
+
+    // Los mejores candidatos por similitudNombre, de mayor a menor
+    public List<Candidato> buscar(MatchearDNI.NombreTokenizado nombre) {
+        int[] ids = nombre.idsConocidos;
+        if (ids.length == 0) {
+            return Collections.emptyList();
+        }
+
+        // Palabras menos frecuentes primero: son las que más discriminan
+        Integer[] orden = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            orden[i] = ids[i];
+        }
+        Arrays.sort(orden, Comparator.comparingInt(this::largoLista));
+
+        Contador contador = CONTADORES.get();
+        try {
+            int visitados = 0;
+            for (int palabra : orden) {
+                int desde = inicioLista[palabra];
+                int hasta = Math.min(inicioLista[palabra + 1], desde + MAX_REGISTROS_VISITADOS - visitados);
+                for (int i = desde; i < hasta; i++) {
+                    contador.sumar(registros[i]);
+                }
+                visitados += hasta - desde;
+                if (visitados >= MAX_REGISTROS_VISITADOS) break;
+            }
+
+            return puntuarMejores(nombre, contador, ids.length);
+        } finally {
+            contador.limpiar();
+        }
+    }
+
+    public long bytesOcupados() {
+        return 4L * inicioLista.length + 4L * registros.length;
+    }
+
+    private int largoLista(int palabra) {
+        return inicioLista[palabra + 1] - inicioLista[palabra];
+    }
+
+    // Toma los registros que más palabras comparten (hasta MAX_CANDIDATOS_A_PUNTUAR),
+    // los puntúa y se queda con los mejores
+    private List<Candidato> puntuarMejores(MatchearDNI.NombreTokenizado nombre, Contador contador, int maximoComun) {
+        List<Candidato> puntuados = new ArrayList<>();
+        for (int comunes = maximoComun; comunes >= 1 && puntuados.size() < MAX_CANDIDATOS_A_PUNTUAR; comunes--) {
+            for (int i = 0; i < contador.cantidadUsados && puntuados.size() < MAX_CANDIDATOS_A_PUNTUAR; i++) {
+                int slot = contador.usados[i];
+                if (contador.cuentas[slot] == comunes) {
+                    int registro = contador.registros[slot] - 1;
+                    puntuados.add(new Candidato(registro, MatchearDNI.similitudNombre(nombre, indice, registro)));
+                }
+            }
+        }
+
+        puntuados.sort((a, b) -> a.similitud != b.similitud
+            ? Double.compare(b.similitud, a.similitud)
+            : Integer.compare(a.registro, b.registro));
+        return puntuados.size() > candidatosPorConsulta
+            ? new ArrayList<>(puntuados.subList(0, candidatosPorConsulta))
+            : puntuados;
+    }
+}
@@ -0,0 +1,321 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Join por ordenamiento externo para cuando con_dni.txt no entra en memoria.
+// 1. con_dni.txt y sin_dni.txt se leen por partes que entran en el presupuesto,
+//    cada parte se ordena por cuenta normalizada y se guarda como un run en disco.
+// 2. Los runs de cada archivo se mezclan (k-way) y se recorren juntos en orden de
+//    cuenta: cada fila de sin_dni se puntúa con similitudNombre contra las filas
+//    de con_dni de su cuenta y gana la de mayor similitud (igual que con los
+//    candidatos de IndiceCuentas).
+// 3. Los resultados se vuelven a ordenar por número de línea de sin_dni.txt con
+//    runs y se escriben con SalidaResultados, en el mismo orden que el modo en memoria.
+// La memoria usada depende del presupuesto, no del tamaño de los archivos.
+public class JoinExterno {
+
+    private static final int FILAS_POR_BLOQUE_SALIDA = 10_000;
+    private static final int TAMANO_BUFFER_RUN = 1 << 16;
+
+    // Bytes de índice en memoria por byte de con_dni.txt (medido con 2.7M filas:
+    // ~1.2x), con margen para el crecimiento de los arrays durante la carga
+    private static final double BYTES_INDICE_POR_BYTE = 2.0;
+
+    // Fila de un run: clave de orden, línea de origen y campos
+    private static class Fila {
+        final String cuentaNorm;
+        final long linea;
+        final int similitud;
+        final String[] campos;
+
+        Fila(String cuentaNorm, long linea, int similitud, String... campos) {
+            this.cuentaNorm = cuentaNorm;
+            this.linea = linea;
+            this.similitud = similitud;
+            this.campos = campos;
+        }
+
+        long bytesEstimados() {
+            long total = 64 + 2L * cuentaNorm.length();
+            for (String campo : campos) {
+                total += 48 + campo.length();
+            }
+            return total;
+        }
+
+        void escribir(DataOutputStream out) throws IOException {
+            escribirTexto(out, cuentaNorm);
+            out.writeLong(linea);
+            out.writeInt(similitud);
+            out.writeByte(campos.length);
+            for (String campo : campos) {
+                escribirTexto(out, campo);
+            }
+        }
+
+        static Fila leer(DataInputStream in) throws IOException {
+            String cuentaNorm;
+            try {
+                cuentaNorm = leerTexto(in);
+            } catch (EOFException e) {
+                return null;
+            }
+            long linea = in.readLong();
+            int similitud = in.readInt();
+            String[] campos = new String[in.readUnsignedByte()];
+            for (int i = 0; i < campos.length; i++) {
+                campos[i] = leerTexto(in);
+            }
+            return new Fila(cuentaNorm, linea, similitud, campos);
+        }
+    }
+
+    private static final Comparator<Fila> POR_CUENTA = Comparator
+        .comparing((Fila f) -> f.cuentaNorm)
+        .thenComparingLong(f -> f.linea);
+
+    private static final Comparator<Fila> POR_LINEA = Comparator.comparingLong(f -> f.linea);
+
+    // Acumula filas en memoria y las baja a disco como runs ordenados
+    private static class Runs {
+        private final Path directorio;
+        private final String prefijo;
+        private final Comparator<Fila> orden;
+        private final long bytesPorRun;
+
+        private final List<Fila> pendientes = new ArrayList<>();
+        private final List<Path> archivos = new ArrayList<>();
+        private long bytesPendientes;
+
+        Runs(Path directorio, String prefijo, Comparator<Fila> orden, long bytesPorRun) {
+            this.directorio = directorio;
+            this.prefijo = prefijo;
+            this.orden = orden;
+            this.bytesPorRun = bytesPorRun;
+        }
+
+        void agregar(Fila fila) throws IOException {
+            pendientes.add(fila);
+            bytesPendientes += fila.bytesEstimados();
+            if (bytesPendientes >= bytesPorRun) {
+                bajarRun();
+            }
+        }
+
+        // Baja lo que quede y devuelve la mezcla ordenada de todos los runs
+        Mezcla terminar() throws IOException {
+            if (!pendientes.isEmpty() || archivos.isEmpty()) {
+                bajarRun();
+            }
+            System.out.println("  " + prefijo + ": " + archivos.size() + " run(s)");
+            return new Mezcla(archivos, orden);
+        }
+
+        private void bajarRun() throws IOException {
+            pendientes.sort(orden);
+            Path archivo = directorio.resolve(prefijo + "_" + archivos.size() + ".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(archivo), TAMANO_BUFFER_RUN))) {
+                for (Fila fila : pendientes) {
+                    fila.escribir(out);
+                }
+            }
+            archivos.add(archivo);
+            pendientes.clear();
+            bytesPendientes = 0;
+        }
+    }
+
+    // Mezcla k-way de runs ordenados
+    private static class Mezcla implements Closeable {
+        private static class Cabeza {
+            final DataInputStream in;
+            Fila fila;
+
+            Cabeza(DataInputStream in) {
+                this.in = in;
+            }
+        }
+
+        private final PriorityQueue<Cabeza> cola;
+        private final List<DataInputStream> abiertos = new ArrayList<>();
+
+        Mezcla(List<Path> archivos, Comparator<Fila> orden) throws IOException {
+            cola = new PriorityQueue<>(Math.max(1, archivos.size()), (a, b) -> orden.compare(a.fila, b.fila));
+            for (Path archivo : archivos) {
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(archivo), TAMANO_BUFFER_RUN));
+                abiertos.add(in);
+                Cabeza cabeza = new Cabeza(in);
+                cabeza.fila = Fila.leer(in);
+                if (cabeza.fila != null) {
+                    cola.add(cabeza);
+                }
+            }
+        }
+
+        // Siguiente fila en orden, o null al terminar
+        Fila siguiente() throws IOException {
+            Cabeza cabeza = cola.poll();
+            if (cabeza == null) {
+                return null;
+            }
+            Fila fila = cabeza.fila;
+            cabeza.fila = Fila.leer(cabeza.in);
+            if (cabeza.fila != null) {
+                cola.add(cabeza);
+            }
+            return fila;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream in : abiertos) {
+                in.close();
+            }
+        }
+    }
+
+    // Tamaño estimado del índice en memoria para con_dni.txt
+    public static long estimarBytesIndice(String archivoConDNI) throws IOException {
+        return (long) (Files.size(Paths.get(archivoConDNI)) * BYTES_INDICE_POR_BYTE);
+    }
+
+    // Paso 1 y 2 sin índice en memoria: escribe los mismos archivos que procesarSinDNI
+    // y devuelve los totales. presupuesto es la memoria disponible para los runs.
+    public static MatchearDNI.BloqueProcesado procesar(String archivoConDNI, String archivoSinDNI,
+                                                      long presupuesto, SalidaResultados salida,
+                                                      MetricasCorrida metricas) throws IOException {
+        // Un run ocupa bastante más en el heap que lo estimado por fila
+        long bytesPorRun = Math.max(1L << 20, presupuesto / 4);
+        Path directorio = Files.createTempDirectory(Paths.get("."), "join_externo_");
+        MatchearDNI.BloqueProcesado total = new MatchearDNI.BloqueProcesado();
+
+        try {
+            metricas.fase("orden_externo");
+            long inicioOrden = System.nanoTime();
+            long filasOrdenadas = 0;
+
+            System.out.println("Ordenando con_dni.txt por cuenta...");
+            Runs runsConDNI = new Runs(directorio, "con_dni", POR_CUENTA, bytesPorRun);
+            try (EscanerCSV esc = new EscanerCSV(archivoConDNI)) {
+                esc.siguienteLinea(); // Saltar header
+                long linea = 0;
+                while (esc.siguienteLinea()) {
+                    // Campos: cuenta;?;cod;nombreyapellido;dni
+                    if (esc.cantidadCampos() >= 5) {
+                        runsConDNI.agregar(new Fila(MatchearDNI.normalizarCuenta(esc.campo(0)), linea++, 0,
+                            esc.campo(2), esc.campo(3), esc.campo(4)));
+                        filasOrdenadas++;
+                    }
+                }
+            }
+
+            System.out.println("Ordenando sin_dni.txt por cuenta...");
+            Runs runsSinDNI = new Runs(directorio, "sin_dni", POR_CUENTA, bytesPorRun);
+            try (EscanerCSV esc = new EscanerCSV(archivoSinDNI)) {
+                esc.siguienteLinea(); // Saltar header
+                long linea = 0;
+                while (esc.siguienteLinea()) {
+                    total.procesados++;
+                    if (esc.cantidadCampos() >= 2) {
+                        String cuenta = esc.campo(0);
+                        runsSinDNI.agregar(new Fila(MatchearDNI.normalizarCuenta(cuenta), linea, 0,
+                            cuenta, esc.campo(1)));
+                        filasOrdenadas++;
+                    }
+                    linea++;
+                }
+            }
+
+            metricas.sumarEtapa(MetricasCorrida.Etapa.ORDEN_EXTERNO, System.nanoTime() - inicioOrden, filasOrdenadas);
+
+            metricas.fase("cruce_externo");
+            long inicioCruce = System.nanoTime();
+            System.out.println("Cruzando por cuenta...");
+            Runs runsResultados = new Runs(directorio, "resultados", POR_LINEA, bytesPorRun);
+            try (Mezcla conDNI = runsConDNI.terminar(); Mezcla sinDNI = runsSinDNI.terminar()) {
+                Fila con = conDNI.siguiente();
+                String cuentaCandidatos = null;
+                List<MatchearDNI.PersonaConDNI> candidatos = Collections.emptyList();
+                for (Fila sin = sinDNI.siguiente(); sin != null; sin = sinDNI.siguiente()) {
+                    // Avanzar con_dni hasta la cuenta de sin y juntar sus filas (en orden
+                    // de línea); las filas de sin con la misma cuenta vienen seguidas
+                    if (!sin.cuentaNorm.equals(cuentaCandidatos)) {
+                        while (con != null && con.cuentaNorm.compareTo(sin.cuentaNorm) < 0) {
+                            con = conDNI.siguiente();
+                        }
+                        List<MatchearDNI.PersonaConDNI> registros = new ArrayList<>(1);
+                        while (con != null && con.cuentaNorm.equals(sin.cuentaNorm)) {
+                            registros.add(new MatchearDNI.PersonaConDNI(con.campos[0], con.campos[1], con.campos[2]));
+                            con = conDNI.siguiente();
+                        }
+                        cuentaCandidatos = sin.cuentaNorm;
+                        candidatos = MatchearDNI.candidatosDistintos(registros);
+                    }
+
+                    String cuenta = sin.campos[0];
+                    String nombreSinDNI = sin.campos[1];
+                    if (!candidatos.isEmpty()) {
+                        MatchearDNI.Resultado r = MatchearDNI.mejorCandidato(cuenta, nombreSinDNI, candidatos);
+                        runsResultados.agregar(new Fila("", sin.linea, r.similitud, cuenta, nombreSinDNI, r.dni, r.cod));
+                        total.matcheados++;
+                        total.contadorPorCod.merge(r.cod, 1, Integer::sum);
+                        if (candidatos.size() > 1) {
+                            total.ambiguas++;
+                        }
+                    } else {
+                        runsResultados.agregar(new Fila("", sin.linea, MatchearDNI.Resultado.NO_ENCONTRADO,
+                            cuenta, nombreSinDNI, MatchearDNI.generarPasswordAleatoria(), ""));
+                        total.noMatcheados++;
+                    }
+                }
+            }
+
+            metricas.sumarEtapa(MetricasCorrida.Etapa.CRUCE_EXTERNO, System.nanoTime() - inicioCruce,
+                total.matcheados + total.noMatcheados);
+
+            metricas.fase("escritura");
+            System.out.println("Escribiendo resultados en el orden de sin_dni.txt...");
+            try (Mezcla resultados = runsResultados.terminar()) {
+                MatchearDNI.BloqueProcesado bloque = new MatchearDNI.BloqueProcesado();
+                for (Fila r = resultados.siguiente(); r != null; r = resultados.siguiente()) {
+                    bloque.resultados.add(new MatchearDNI.Resultado(
+                        r.campos[0], r.campos[1], r.campos[2], r.campos[3], r.similitud));
+                    if (bloque.resultados.size() == FILAS_POR_BLOQUE_SALIDA) {
+                        salida.escribir(bloque);
+                        bloque = new MatchearDNI.BloqueProcesado();
+                    }
+                }
+                salida.escribir(bloque);
+            }
+        } finally {
+            borrarDirectorio(directorio);
+        }
+
+        return total;
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        // Los campos vienen de archivos ISO-8859-1: un byte por carácter
+        byte[] bytes = texto.getBytes(StandardCharsets.ISO_8859_1);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void borrarDirectorio(Path directorio) throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)) {
+            for (Path archivo : archivos) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+        Files.deleteIfExists(directorio);
+    }
+}
@@ -1,9 +1,15 @@
 import java.io.*;
-import java.text.Normalizer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntToDoubleFunction;
 
 public class MatchearDNI {
 
+    private static final long BYTES_POR_BLOQUE = 4L * 1024 * 1024;
+    private static final long BYTES_POR_BLOQUE_CHECKPOINT = 1024 * 1024;  // Menos para rehacer al retomar
+
     // Clase para almacenar datos de una persona con DNI
     static class PersonaConDNI {
         String cod;
@@ -19,13 +25,15 @@ public class MatchearDNI {
 
     // Clase para almacenar resultados del matcheo
     static class Resultado {
+        static final int NO_ENCONTRADO = -1;
+
         String cuenta;
         String nombre;
         String dni;
         String cod;
-        String similitud;
+        int similitud;  // Centésimas de porcentaje (8571 = 85.71%) o NO_ENCONTRADO
 
-        Resultado(String cuenta, String nombre, String dni, String cod, String similitud) {
+        Resultado(String cuenta, String nombre, String dni, String cod, int similitud) {
             this.cuenta = cuenta;
             this.nombre = nombre;
             this.dni = dni;
@@ -35,24 +43,14 @@ public class MatchearDNI {
     }
 
     // Normaliza texto: sin acentos, mayúsculas, sin espacios extras
+    // (por tabla en una sola pasada, ver CanonizadorLatin1)
     public static String normalizarTexto(String texto) {
-        if (texto == null || texto.trim().isEmpty()) {
-            return "";
-        }
-
-        // Quitar acentos
-        String normalized = Normalizer.normalize(texto, Normalizer.Form.NFD);
-        normalized = normalized.replaceAll("\\p{M}", "");
-
-        // Mayúsculas y quitar espacios extras
-        normalized = normalized.toUpperCase().trim().replaceAll("\\s+", " ");
-
-        return normalized;
+        return CanonizadorLatin1.normalizar(texto);
     }
 
     // Quita ceros a la izquierda de la cuenta
     public static String normalizarCuenta(String cuenta) {
-        return cuenta.replaceFirst("^0+(?!$)", "");
+        return CanonizadorLatin1.normalizarCuenta(cuenta);
     }
 
     // Calcula similitud entre dos cadenas usando Levenshtein simplificado
@@ -67,45 +65,33 @@ public class MatchearDNI {
         return 1.0 - ((double) distance / maxLen);
     }
 
-    // Distancia de Levenshtein
+    // Igual que similitudTexto, pero si la similitud no puede llegar a minimo corta
+    // el cálculo antes y devuelve -1
+    public static double similitudTexto(String s1, String s2, double minimo) {
+        if (s1 == null) s1 = "";
+        if (s2 == null) s2 = "";
+
+        return MotorLevenshtein.similitud(s1, s2, minimo);
+    }
+
+    // Distancia de Levenshtein (bit-paralela o DP de dos filas, ver MotorLevenshtein)
     private static int levenshteinDistance(String s1, String s2) {
         if (s1 == null || s1.isEmpty()) return s2 == null ? 0 : s2.length();
         if (s2 == null || s2.isEmpty()) return s1.length();
 
-        int len1 = s1.length();
-        int len2 = s2.length();
-
-        int[][] dp = new int[len1 + 1][len2 + 1];
-
-        for (int i = 0; i <= len1; i++) {
-            dp[i][0] = i;
-        }
-        for (int j = 0; j <= len2; j++) {
-            dp[0][j] = j;
-        }
-
-        for (int i = 1; i <= len1; i++) {
-            for (int j = 1; j <= len2; j++) {
-                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(Math.min(
-                    dp[i - 1][j] + 1,      // eliminación
-                    dp[i][j - 1] + 1),     // inserción
-                    dp[i - 1][j - 1] + cost); // sustitución
-            }
-        }
-
-        return dp[len1][len2];
+        return MotorLevenshtein.distancia(s1, s2);
     }
 
+    // Puntajes de similitudNombre además de la cobertura de palabras (--similitud);
+    // se fija antes de empezar a procesar
+    static CascadaSimilitud cascada = CascadaSimilitud.PREDETERMINADA;
+
     // Calcula similitud entre dos nombres
     public static double similitudNombre(String nombre1, String nombre2) {
         String n1 = normalizarTexto(nombre1);
         String n2 = normalizarTexto(nombre2);
 
-        // Similitud directa
-        double similitudDirecta = similitudTexto(n1, n2);
-
-        // También verificar cobertura de palabras
+        // Cobertura de palabras
         Set<String> palabras1 = new HashSet<>(Arrays.asList(n1.split(" ")));
         Set<String> palabras2 = new HashSet<>(Arrays.asList(n2.split(" ")));
 
@@ -116,8 +102,117 @@ public class MatchearDNI {
             cobertura = (double) comunes.size() / Math.max(palabras1.size(), palabras2.size());
         }
 
-        // Retornar el máximo
-        return Math.max(similitudDirecta, cobertura);
+        // Similitud directa: solo se calcula si puede superar a la cobertura
+        return cascada.similitud(n1, n2, cobertura);
+    }
+
+    // Similitud (0..1) como centésimas de porcentaje, redondeada igual que
+    // String.format("%.2f", similitud * 100): mitad hacia arriba sobre el decimal
+    // más corto del double. Solo los casos cerca del empate usan BigDecimal.
+    public static int centesimas(double similitud) {
+        double porcentaje = similitud * 100;
+        double escalado = porcentaje * 100;
+        double fraccion = escalado - Math.floor(escalado);
+        if (Math.abs(fraccion - 0.5) > 1e-6) {
+            return (int) Math.round(escalado);
+        }
+        return new BigDecimal(Double.toString(porcentaje)).setScale(2, RoundingMode.HALF_UP)
+            .unscaledValue().intValue();
+    }
+
+    // Candidato del índice difuso para una cuenta no encontrada
+    static class CandidatoDifuso {
+        String cuenta;
+        String nombre;
+        String cuentaCandidata;
+        String nombreCandidato;
+        String dni;
+        String cod;
+        int similitud;  // Centésimas de porcentaje
+
+        CandidatoDifuso(String cuenta, String nombre, String cuentaCandidata, String nombreCandidato,
+                        String dni, String cod, int similitud) {
+            this.cuenta = cuenta;
+            this.nombre = nombre;
+            this.cuentaCandidata = cuentaCandidata;
+            this.nombreCandidato = nombreCandidato;
+            this.dni = dni;
+            this.cod = cod;
+            this.similitud = similitud;
+        }
+    }
+
+    // Nombre del archivo sin DNI normalizado y separado en palabras una sola vez,
+    // con las palabras traducidas a ids del diccionario del índice
+    static class NombreTokenizado {
+        final String normalizado;
+        final int[] idsConocidos;       // Ids ordenados y sin repetir de las palabras que están en el diccionario
+        final int palabrasDistintas;    // Incluye las palabras que no están en el diccionario
+
+        NombreTokenizado(String normalizado, int[] idsConocidos, int palabrasDistintas) {
+            this.normalizado = normalizado;
+            this.idsConocidos = idsConocidos;
+            this.palabrasDistintas = palabrasDistintas;
+        }
+    }
+
+    public static NombreTokenizado tokenizarNombre(String nombre, DiccionarioTokens diccionario) {
+        String normalizado = normalizarTexto(nombre);
+        int[] ids = diccionario.idsDePalabras(normalizado, false);
+
+        int[] conocidos = ids.clone();
+        Arrays.sort(conocidos);
+        int cantidadConocidos = 0;
+        boolean hayDesconocidas = false;
+        for (int i = 0; i < conocidos.length; i++) {
+            if (conocidos[i] < 0) {
+                hayDesconocidas = true;
+            } else if (cantidadConocidos == 0 || conocidos[i] != conocidos[cantidadConocidos - 1]) {
+                conocidos[cantidadConocidos++] = conocidos[i];
+            }
+        }
+
+        int distintas = cantidadConocidos;
+        if (hayDesconocidas) {
+            // Las desconocidas no tienen id: se cuentan las distintas por texto
+            Set<String> desconocidas = new HashSet<>();
+            for (String palabra : normalizado.split(" ")) {
+                if (diccionario.buscar(palabra, 0, palabra.length()) < 0) {
+                    desconocidas.add(palabra);
+                }
+            }
+            distintas += desconocidas.size();
+        }
+
+        return new NombreTokenizado(normalizado, Arrays.copyOf(conocidos, cantidadConocidos), distintas);
+    }
+
+    private static final ThreadLocal<StringBuilder> NOMBRE_REGISTRO = ThreadLocal.withInitial(StringBuilder::new);
+
+    // Igual que similitudNombre(nombre, persona.nombreyapellido) pero usando las palabras
+    // precalculadas del registro: la cobertura es una intersección de arrays ordenados
+    public static double similitudNombre(NombreTokenizado nombre, IndiceCuentas indice, int registro) {
+        int distintas = indice.palabrasDistintas(registro);
+        double cobertura = 0.0;
+        if (nombre.palabrasDistintas > 0 && distintas > 0) {
+            cobertura = (double) indice.palabrasEnComun(registro, nombre.idsConocidos)
+                / Math.max(nombre.palabrasDistintas, distintas);
+        }
+
+        // La etapa de largo no necesita el nombre del registro: se evita armarlo
+        int largoRegistro = indice.largoNombre(registro);
+        if (largoRegistro >= 0) {
+            double porLargo = cascada.porLargo(nombre.normalizado.length(), largoRegistro, cobertura);
+            if (porLargo >= 0) return porLargo;
+        }
+
+        StringBuilder nombreRegistro = NOMBRE_REGISTRO.get();
+        nombreRegistro.setLength(0);
+        indice.armarNombre(registro, nombreRegistro);
+
+        return largoRegistro >= 0
+            ? cascada.porContenido(nombre.normalizado, nombreRegistro, cobertura)
+            : cascada.similitud(nombre.normalizado, nombreRegistro, cobertura);
     }
 
     // Genera una contraseña aleatoria de 9 caracteres (letras y números)
@@ -156,37 +251,598 @@ public class MatchearDNI {
         return campos.toArray(new String[0]);
     }
 
-    public static void main(String[] args) {
-        System.out.println("=== INICIANDO PROCESO DE MATCHEO ===\n");
+    // Opciones de línea de comandos
+    static class Opciones {
+        int hilos = 1;
+        boolean curvaAceleracion = false;
+        int candidatos = 0;  // Candidatos del índice difuso por cuenta no encontrada (0 = desactivado)
+        String snapshot = "con_dni.snapshot";  // null = sin snapshot
+        long memoriaMaxima = Runtime.getRuntime().maxMemory() / 2;  // Presupuesto para el índice en memoria
+        boolean joinExterno = false;
+        int metricasCada = 0;  // Segundos entre snapshots de métricas (0 = solo el reporte final)
+        String encriptar = null;  // URL de la API de encriptación (null = no encriptar)
+        int encriptarMaximo = EncriptadorCuentas.LIMITE_MAXIMO_DEFAULT;
+        boolean encriptarInseguro = false;
+        boolean checkpoint = false;
+        boolean delta = false;
+        int servidor = 0;  // Puerto del modo servidor (0 = corrida batch)
+        String servidorHost = null;  // Dirección donde escucha el servidor (null = solo loopback)
+        int particiones = 0;  // Partes por hash de todos_encontrados.txt (0 = no particionar por hash)
+        boolean particionarCod = false;
+        boolean descartarOtrosCod = false;
+        int filasPorSegmento = 0;  // 0 = se sellan al terminar
+        CascadaSimilitud cascada = CascadaSimilitud.PREDETERMINADA;
+
+        static Opciones parsear(String[] args) {
+            Opciones opciones = new Opciones();
+            String puntajes = null;
+            boolean conCotas = true;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta el número de hilos para --threads");
+                        }
+                        try {
+                            opciones.hilos = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Número de hilos inválido: " + args[i]);
+                        }
+                        if (opciones.hilos < 1) {
+                            return errorDeUso("El número de hilos debe ser al menos 1");
+                        }
+                        break;
+                    case "--curva-aceleracion":
+                        opciones.curvaAceleracion = true;
+                        break;
+                    case "--candidatos":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la cantidad de candidatos para --candidatos");
+                        }
+                        try {
+                            opciones.candidatos = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Cantidad de candidatos inválida: " + args[i]);
+                        }
+                        if (opciones.candidatos < 1) {
+                            return errorDeUso("La cantidad de candidatos debe ser al menos 1");
+                        }
+                        break;
+                    case "--snapshot":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta el archivo para --snapshot");
+                        }
+                        opciones.snapshot = args[++i];
+                        break;
+                    case "--sin-snapshot":
+                        opciones.snapshot = null;
+                        break;
+                    case "--memoria":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta el presupuesto en MB para --memoria");
+                        }
+                        try {
+                            opciones.memoriaMaxima = Long.parseLong(args[++i]) * 1024 * 1024;
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Presupuesto de memoria inválido: " + args[i]);
+                        }
+                        if (opciones.memoriaMaxima < 1) {
+                            return errorDeUso("El presupuesto de memoria debe ser al menos 1 MB");
+                        }
+                        break;
+                    case "--join-externo":
+                        opciones.joinExterno = true;
+                        break;
+                    case "--metricas-cada":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Faltan los segundos para --metricas-cada");
+                        }
+                        try {
+                            opciones.metricasCada = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Intervalo de métricas inválido: " + args[i]);
+                        }
+                        if (opciones.metricasCada < 1) {
+                            return errorDeUso("El intervalo de métricas debe ser al menos 1 segundo");
+                        }
+                        break;
+                    case "--encriptar":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la URL de la API para --encriptar");
+                        }
+                        opciones.encriptar = args[++i];
+                        break;
+                    case "--encriptar-max":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la cantidad de pedidos para --encriptar-max");
+                        }
+                        try {
+                            opciones.encriptarMaximo = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Cantidad de pedidos inválida: " + args[i]);
+                        }
+                        if (opciones.encriptarMaximo < 1) {
+                            return errorDeUso("La cantidad de pedidos en vuelo debe ser al menos 1");
+                        }
+                        break;
+                    case "--encriptar-inseguro":
+                        opciones.encriptarInseguro = true;
+                        break;
+                    case "--checkpoint":
+                        opciones.checkpoint = true;
+                        break;
+                    case "--delta":
+                        opciones.delta = true;
+                        break;
+                    case "--servidor":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta el puerto para --servidor");
+                        }
+                        try {
+                            opciones.servidor = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Puerto inválido: " + args[i]);
+                        }
+                        if (opciones.servidor < 1 || opciones.servidor > 65535) {
+                            return errorDeUso("El puerto debe estar entre 1 y 65535");
+                        }
+                        break;
+                    case "--servidor-host":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la dirección para --servidor-host");
+                        }
+                        opciones.servidorHost = args[++i];
+                        break;
+                    case "--particiones":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la cantidad de partes para --particiones");
+                        }
+                        try {
+                            opciones.particiones = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Cantidad de partes inválida: " + args[i]);
+                        }
+                        if (opciones.particiones < 1) {
+                            return errorDeUso("La cantidad de partes debe ser al menos 1");
+                        }
+                        break;
+                    case "--particionar-cod":
+                        opciones.particionarCod = true;
+                        break;
+                    case "--descartar-otros-cod":
+                        opciones.descartarOtrosCod = true;
+                        break;
+                    case "--filas-por-segmento":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Falta la cantidad de filas para --filas-por-segmento");
+                        }
+                        try {
+                            opciones.filasPorSegmento = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            return errorDeUso("Cantidad de filas inválida: " + args[i]);
+                        }
+                        if (opciones.filasPorSegmento < 1) {
+                            return errorDeUso("La cantidad de filas por segmento debe ser al menos 1");
+                        }
+                        break;
+                    case "--similitud":
+                        if (i + 1 >= args.length) {
+                            return errorDeUso("Faltan los puntajes para --similitud");
+                        }
+                        puntajes = args[++i];
+                        break;
+                    case "--sin-cotas":
+                        conCotas = false;
+                        break;
+                    default:
+                        return errorDeUso("Opción desconocida: " + args[i]);
+                }
+            }
+            if (opciones.particiones > 0 && opciones.particionarCod) {
+                return errorDeUso("--particiones y --particionar-cod no se pueden usar juntas");
+            }
+            if ((opciones.descartarOtrosCod || opciones.filasPorSegmento > 0) && !opciones.particionado()) {
+                return errorDeUso("--descartar-otros-cod y --filas-por-segmento requieren --particiones o --particionar-cod");
+            }
+            if (opciones.servidorHost != null && opciones.servidor == 0) {
+                return errorDeUso("--servidor-host solo se usa con --servidor");
+            }
+            if (opciones.checkpoint && opciones.particionado()) {
+                // Al retomar, las particiones no tendrían las filas de antes del corte
+                return errorDeUso("--checkpoint no se puede usar con --particiones ni --particionar-cod");
+            }
+            if (puntajes != null || !conCotas) {
+                try {
+                    opciones.cascada = CascadaSimilitud.desde(puntajes != null ? puntajes : "levenshtein", conCotas);
+                } catch (IllegalArgumentException e) {
+                    return errorDeUso("--similitud: " + e.getMessage());
+                }
+            }
+            return opciones;
+        }
 
-        // Rutas de archivos (ajustar según ubicación)
-        String archivoConDNI = "con_dni.txt";
-        String archivoSinDNI = "sin_dni.txt";
-        String archivoResultado = "resultado_matcheado.txt";
+        boolean particionado() {
+            return particiones > 0 || particionarCod;
+        }
+
+        private static Opciones errorDeUso(String mensaje) {
+            System.err.println("Error: " + mensaje);
+            System.err.println("Uso: java MatchearDNI [--threads N] [--curva-aceleracion] [--candidatos K]" +
+                " [--snapshot ARCHIVO | --sin-snapshot] [--memoria MB] [--join-externo]" +
+                " [--metricas-cada SEG] [--encriptar URL [--encriptar-max N] [--encriptar-inseguro]]" +
+                " [--checkpoint] [--delta] [--servidor PUERTO [--servidor-host HOST]]" +
+                " [--particiones N | --particionar-cod] [--descartar-otros-cod] [--filas-por-segmento M]" +
+                " [--similitud PUNTAJES] [--sin-cotas]");
+            System.err.println("  --threads N           procesa sin_dni.txt en paralelo con N hilos (default 1)");
+            System.err.println("  --curva-aceleracion   mide el paso 2 con 1..N hilos antes de guardar resultados");
+            System.err.println("  --candidatos K        busca por nombre los K mejores candidatos de cada cuenta no encontrada");
+            System.err.println("  --snapshot ARCHIVO    snapshot del índice de con_dni.txt (default con_dni.snapshot)");
+            System.err.println("  --sin-snapshot        siempre parsea con_dni.txt y no guarda snapshot");
+            System.err.println("  --memoria MB          presupuesto para el índice en memoria (default: mitad del heap);");
+            System.err.println("                        si el índice estimado no entra se usa el join externo");
+            System.err.println("  --join-externo        cruza ordenando ambos archivos en disco, sin índice en memoria");
+            System.err.println("  --metricas-cada SEG   escribe metricas_en_curso.json cada SEG segundos durante la corrida");
+            System.err.println("  --encriptar URL       encripta las cuentas encontradas contra la API a medida que salen");
+            System.err.println("  --encriptar-max N     tope de pedidos en vuelo del límite adaptativo (default " +
+                EncriptadorCuentas.LIMITE_MAXIMO_DEFAULT + ")");
+            System.err.println("  --encriptar-inseguro  no verifica el certificado TLS de la API (solo ese cliente)");
+            System.err.println("  --checkpoint          lleva un journal (" + CheckpointMatcheo.ARCHIVO + ") y, si la corrida");
+            System.err.println("                        anterior se cortó, sigue desde donde quedó en vez de empezar de cero");
+            System.err.println("  --delta               solo vuelve a matchear las filas que cambiaron desde la corrida");
+            System.err.println("                        anterior (" + MatcheoIncremental.ARCHIVO_ESTADO + "); los no encontrados que");
+            System.err.println("                        no cambiaron conservan su password");
+            System.err.println("  --servidor PUERTO     no corre el batch: carga el índice una vez y responde consultas");
+            System.err.println("                        de cuenta y nombre por HTTP (ver ServidorMatcheo); solo escucha");
+            System.err.println("                        en loopback (127.0.0.1)");
+            System.err.println("  --servidor-host HOST  escucha en esa dirección (0.0.0.0 = todas); el servidor no tiene");
+            System.err.println("                        autenticación y devuelve DNI: exponerlo es decisión explícita");
+            System.err.println("  --particiones N       escribe además los encontrados en N partes por hash de la cuenta");
+            System.err.println("  --particionar-cod     escribe además los encontrados en un archivo por COD");
+            System.err.println("  --descartar-otros-cod descarta de las particiones los COD no permitidos (si no, van aparte)");
+            System.err.println("  --filas-por-segmento M");
+            System.err.println("                        sella cada partición cada M filas (ver " + SalidaParticionada.MANIFIESTO + ")");
+            System.err.println("  --similitud PUNTAJES  puntajes de nombre además de la cobertura de palabras, separados por");
+            System.err.println("                        coma: levenshtein (default), jaro-winkler, token-sort");
+            System.err.println("  --sin-cotas           calcula todos los puntajes sin descartar pares por largo ni por");
+            System.err.println("                        caracteres en común (mismo resultado, para comparar)");
+            return null;
+        }
+    }
+
+    // Resultado parcial de procesar un bloque de líneas de sin_dni.txt.
+    // Cada hilo acumula sus propios contadores y después se suman en orden; las
+    // filas del bloque se escriben y se descartan, no pasan al total.
+    static class BloqueProcesado {
+        List<Resultado> resultados = new ArrayList<>();
+        List<CandidatoDifuso> candidatos = new ArrayList<>();
+        Map<String, Integer> contadorPorCod = new HashMap<>();
+        int procesados;
+        int matcheados;
+        int noMatcheados;
+        int busquedasDifusas;
+        int candidatosEncontrados;
+        int ambiguas;  // Encontradas con más de un candidato en con_dni.txt
+        long nanosBusquedaDifusa;
+        MetricasCorrida.Parciales metricas = new MetricasCorrida.Parciales();
+
+        void sumar(BloqueProcesado otro) {
+            metricas.sumar(otro.metricas);
+            busquedasDifusas += otro.busquedasDifusas;
+            candidatosEncontrados += otro.candidatosEncontrados;
+            ambiguas += otro.ambiguas;
+            nanosBusquedaDifusa += otro.nanosBusquedaDifusa;
+            for (Map.Entry<String, Integer> entry : otro.contadorPorCod.entrySet()) {
+                contadorPorCod.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            procesados += otro.procesados;
+            matcheados += otro.matcheados;
+            noMatcheados += otro.noMatcheados;
+        }
+    }
 
+    // Matchea las líneas de sin_dni.txt que empiezan dentro de [desde, hasta).
+    // Si hay índice difuso, también busca candidatos por nombre para las no encontradas.
+    static BloqueProcesado procesarBloque(IndiceCuentas dniDict, IndiceDifuso difuso, String archivoSinDNI,
+                                          long desde, long hasta) throws IOException {
+        BloqueProcesado bloque = new BloqueProcesado();
+
+        try (EscanerCSV escSinDNI = new EscanerCSV(archivoSinDNI, desde, hasta)) {
+            // La latencia de un registro va desde el fin del anterior (incluye leer la línea)
+            long marca = System.nanoTime();
+            while (escSinDNI.siguienteLinea()) {
+                bloque.procesados++;
+
+                if (escSinDNI.cantidadCampos() >= 2) {
+                    String cuenta = escSinDNI.campo(0);
+                    String nombreSinDNI = escSinDNI.campo(1);
+                    long finParseo = System.nanoTime();
+                    bloque.metricas.sumarEtapa(MetricasCorrida.Etapa.PARSEO, finParseo - marca);
+
+                    procesarRegistro(dniDict, difuso, cuenta, nombreSinDNI, bloque);
+
+                    long finRegistro = System.nanoTime();
+                    bloque.metricas.registrarLatencia(finRegistro - marca);
+                    marca = finRegistro;
+                }
+            }
+        }
+
+        return bloque;
+    }
+
+    // Matchea una línea de sin_dni.txt y acumula el resultado en bloque
+    static void procesarRegistro(IndiceCuentas dniDict, IndiceDifuso difuso, String cuenta,
+                                 String nombreSinDNI, BloqueProcesado bloque) {
+        long inicio = System.nanoTime();
+        String cuentaNorm = normalizarCuenta(cuenta);
+
+        // Buscar por cuenta
+        int candidatos = dniDict.buscarCandidatos(cuentaNorm);
+        long finBusqueda = System.nanoTime();
+        bloque.metricas.sumarEtapa(MetricasCorrida.Etapa.BUSQUEDA, finBusqueda - inicio);
+        if (candidatos != -1) {
+            // Verificar similitud de nombres (con las palabras precalculadas al cargar)
+            // contra cada candidato de la cuenta; en empate gana la fila posterior
+            NombreTokenizado nombre = tokenizarNombre(nombreSinDNI, dniDict.diccionario());
+            int cantidad = dniDict.cantidadCandidatos(candidatos);
+            Eleccion mejor = elegirCandidato(cantidad,
+                i -> similitudNombre(nombre, dniDict, dniDict.candidato(candidatos, i)));
+            int registro = dniDict.candidato(candidatos, mejor.posicion);
+            double similitud = mejor.similitud;
+            if (cantidad > 1) {
+                bloque.ambiguas++;
+            }
+            String cod = dniDict.cod(registro);
+            String dni = dniDict.dni(registro);
+            bloque.metricas.sumarEtapa(MetricasCorrida.Etapa.SIMILITUD, System.nanoTime() - finBusqueda);
+
+            // NUEVO: Agregar TODOS los encontrados con cualquier similitud
+            bloque.resultados.add(new Resultado(
+                cuenta,
+                nombreSinDNI,
+                dni,
+                cod,
+                centesimas(similitud)
+            ));
+            bloque.matcheados++;
+
+            // Contar por COD
+            bloque.contadorPorCod.merge(cod, 1, Integer::sum);
+
+            /* COMENTADO: Lógica anterior con umbral de 51%
+            if (similitud >= 0.51) {
+                bloque.resultados.add(new Resultado(
+                    cuenta,
+                    nombreSinDNI,
+                    dni,
+                    cod,
+                    String.format("%.2f%%", similitud * 100)
+                ));
+                bloque.matcheados++;
+            } else {
+                bloque.resultados.add(new Resultado(
+                    cuenta,
+                    nombreSinDNI,
+                    "RECHAZADO_NOMBRE_DIFERENTE",
+                    "",
+                    String.format("%.2f%%", similitud * 100)
+                ));
+                bloque.rechazadosPorNombre++;
+            }
+            */
+        } else {
+            // NUEVO: Generar contraseña aleatoria para los no encontrados
+            String passwordAleatoria = generarPasswordAleatoria();
+            bloque.resultados.add(new Resultado(
+                cuenta,
+                nombreSinDNI,
+                passwordAleatoria,
+                "",
+                Resultado.NO_ENCONTRADO
+            ));
+            bloque.noMatcheados++;
+
+            if (difuso != null) {
+                buscarCandidatos(difuso, dniDict, cuenta, nombreSinDNI, bloque);
+            }
+        }
+    }
+
+    // Los registros distintos de una cuenta repetida en con_dni.txt, en orden de
+    // archivo. De los que tienen el mismo cod, nombre normalizado y dni queda el
+    // último (igual que en IndiceCuentas).
+    static List<PersonaConDNI> candidatosDistintos(List<PersonaConDNI> registros) {
+        if (registros.size() == 1) {
+            return registros;
+        }
+        Set<List<String>> vistos = new HashSet<>();
+        List<PersonaConDNI> distintos = new ArrayList<>(registros.size());
+        for (int i = registros.size() - 1; i >= 0; i--) {
+            PersonaConDNI p = registros.get(i);
+            if (vistos.add(Arrays.asList(p.cod, normalizarTexto(p.nombreyapellido), p.dni))) {
+                distintos.add(p);
+            }
+        }
+        Collections.reverse(distintos);
+        return distintos;
+    }
+
+    // Candidato elegido entre los de una cuenta: su posición y su similitud
+    static class Eleccion {
+        final int posicion;
+        final double similitud;
+
+        Eleccion(int posicion, double similitud) {
+            this.posicion = posicion;
+            this.similitud = similitud;
+        }
+    }
+
+    // Regla única para elegir entre los candidatos de una cuenta (la usan el batch,
+    // el join externo, el modo delta y el servidor): gana el de mayor similitud y,
+    // en empate, el posterior (la fila más nueva de con_dni.txt)
+    static Eleccion elegirCandidato(int cantidad, IntToDoubleFunction similitudDe) {
+        int posicion = -1;
+        double similitud = -1;
+        for (int i = 0; i < cantidad; i++) {
+            double deCandidato = similitudDe.applyAsDouble(i);
+            if (deCandidato >= similitud) {
+                similitud = deCandidato;
+                posicion = i;
+            }
+        }
+        return new Eleccion(posicion, similitud);
+    }
+
+    // Como procesarRegistro con los candidatos ya buscados (de candidatosDistintos)
+    static Resultado mejorCandidato(String cuenta, String nombreSinDNI, List<PersonaConDNI> candidatos) {
+        Eleccion eleccion = elegirCandidato(candidatos.size(),
+            i -> similitudNombre(nombreSinDNI, candidatos.get(i).nombreyapellido));
+        PersonaConDNI mejor = candidatos.get(eleccion.posicion);
+        return new Resultado(cuenta, nombreSinDNI, mejor.dni, mejor.cod, centesimas(eleccion.similitud));
+    }
+
+    // Busca en el índice difuso los candidatos por nombre de una cuenta no encontrada
+    static void buscarCandidatos(IndiceDifuso difuso, IndiceCuentas dniDict, String cuenta,
+                                 String nombreSinDNI, BloqueProcesado bloque) {
+        long inicio = System.nanoTime();
+        NombreTokenizado nombre = tokenizarNombre(nombreSinDNI, dniDict.diccionario());
+        List<IndiceDifuso.Candidato> encontrados = difuso.buscar(nombre);
+        bloque.nanosBusquedaDifusa += System.nanoTime() - inicio;
+        bloque.busquedasDifusas++;
+        bloque.candidatosEncontrados += encontrados.size();
+
+        for (IndiceDifuso.Candidato candidato : encontrados) {
+            bloque.candidatos.add(new CandidatoDifuso(
+                cuenta,
+                nombreSinDNI,
+                dniDict.cuenta(candidato.registro),
+                dniDict.nombre(candidato.registro),
+                dniDict.dni(candidato.registro),
+                dniDict.cod(candidato.registro),
+                centesimas(candidato.similitud)
+            ));
+        }
+    }
+
+    // Paso 2: divide sin_dni.txt en bloques de bytes alineados a inicio de línea,
+    // los matchea en un pool de hilos y los escribe en salida en el orden original
+    // (salida puede ser null para solo medir). Hay a lo sumo 2 bloques por hilo en
+    // vuelo, así que la memoria no crece con el tamaño del archivo.
+    // Con checkpoint (null = sin journal) se sigue desde donde quedó la corrida
+    // anterior y se registra cada bloque escrito.
+    static BloqueProcesado procesarSinDNI(IndiceCuentas dniDict, IndiceDifuso difuso, String archivoSinDNI,
+                                          int hilos, SalidaResultados salida, CheckpointMatcheo checkpoint,
+                                          boolean mostrarProgreso) throws IOException {
+        long inicioDatos;
+        long finArchivo;
+        try (EscanerCSV escSinDNI = new EscanerCSV(archivoSinDNI)) {
+            escSinDNI.siguienteLinea(); // Saltar header
+            inicioDatos = escSinDNI.inicioSiguienteLinea();
+            finArchivo = escSinDNI.largoArchivo();
+        }
+        if (checkpoint != null && checkpoint.retoma()) {
+            inicioDatos = checkpoint.reanudarDesde();
+        }
+
+        // Varios bloques por hilo para repartir mejor la carga
+        long bytesPorBloque = checkpoint != null ? BYTES_POR_BLOQUE_CHECKPOINT : BYTES_POR_BLOQUE;
+        long bytesDatos = finArchivo - inicioDatos;
+        int cantidadBloques = (int) Math.max(hilos * 4L, (bytesDatos + bytesPorBloque - 1) / bytesPorBloque);
+        cantidadBloques = (int) Math.max(1, Math.min(cantidadBloques, bytesDatos));
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
         try {
-            // Paso 1: Cargar archivo con DNI
-            System.out.println("Cargando archivo con DNI (2.7M registros)...");
-            Map<String, PersonaConDNI> dniDict = new HashMap<>();
+            Deque<Future<BloqueProcesado>> pendientes = new ArrayDeque<>();
+            Deque<Long> finesPendientes = new ArrayDeque<>();
+            int enviados = 0;
+            BloqueProcesado total = checkpoint != null ? checkpoint.totalPrevio() : new BloqueProcesado();
+
+            while (enviados < cantidadBloques || !pendientes.isEmpty()) {
+                while (enviados < cantidadBloques && pendientes.size() < hilos * 2) {
+                    long desde = inicioDatos + bytesDatos * enviados / cantidadBloques;
+                    long hasta = inicioDatos + bytesDatos * (enviados + 1) / cantidadBloques;
+                    pendientes.add(pool.submit(() -> procesarBloque(dniDict, difuso, archivoSinDNI, desde, hasta)));
+                    finesPendientes.add(hasta);
+                    enviados++;
+                }
 
-            BufferedReader brConDNI = new BufferedReader(
-                new InputStreamReader(new FileInputStream(archivoConDNI), "ISO-8859-1")
-            );
+                BloqueProcesado bloque = esperar(pendientes.poll());
+                long hasta = finesPendientes.poll();
+                if (salida != null) {
+                    salida.escribir(bloque);
+                }
+                total.sumar(bloque);
+                if (checkpoint != null) {
+                    checkpoint.registrar(hasta, total, salida);
+                }
 
-            String linea = brConDNI.readLine(); // Saltar header
-            int contadorCarga = 0;
+                if (mostrarProgreso) {
+                    System.out.println("Procesados " + total.procesados + " registros... " +
+                        "(Matcheados: " + total.matcheados +
+                        ", No encontrados: " + total.noMatcheados + ")");
+                }
+            }
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-            while ((linea = brConDNI.readLine()) != null) {
-                String[] campos = parsearLineaCSV(linea);
+    // Corre el paso 2 con 1..N hilos (sin escribir resultados) e informa el tiempo
+    // y la aceleración de cada uno
+    static void medirCurvaAceleracion(IndiceCuentas dniDict, IndiceDifuso difuso, String archivoSinDNI,
+                                      int hilosMaximos) throws IOException {
+        System.out.println("Midiendo curva de aceleración (1 a " + hilosMaximos + " hilos)...");
+
+        // Corrida de calentamiento para que el JIT no penalice a la primera medición
+        procesarSinDNI(dniDict, difuso, archivoSinDNI, hilosMaximos, null, null, false);
+
+        long tiempoUnHilo = 0;
+        for (int hilos = 1; hilos <= hilosMaximos; hilos++) {
+            long inicio = System.nanoTime();
+            procesarSinDNI(dniDict, difuso, archivoSinDNI, hilos, null, null, false);
+            long tiempo = System.nanoTime() - inicio;
+            if (hilos == 1) {
+                tiempoUnHilo = tiempo;
+            }
+            System.out.println(String.format("  %2d hilo(s): %8d ms  (aceleración x%.2f)",
+                hilos, tiempo / 1_000_000, (double) tiempoUnHilo / tiempo));
+        }
+        System.out.println();
+    }
+
+    private static <T> T esperar(Future<T> pendiente) throws IOException {
+        try {
+            return pendiente.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento interrumpido", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException) {
+                throw (IOException) causa;
+            }
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new IOException(causa);
+        }
+    }
+
+    // Parsea con_dni.txt y arma el índice de cuentas
+    static IndiceCuentas cargarConDNI(String archivoConDNI) throws IOException {
+        System.out.println("Cargando archivo con DNI (2.7M registros)...");
+        IndiceCuentas dniDict = new IndiceCuentas(2_700_000);
 
-                if (campos.length >= 5) {
-                    String cuenta = campos[0];
-                    String cod = campos[2];
-                    String nombreyapellido = campos[3];
-                    String dni = campos[4];
+        try (EscanerCSV escConDNI = new EscanerCSV(archivoConDNI)) {
+            escConDNI.siguienteLinea(); // Saltar header
+            int contadorCarga = 0;
 
-                    String cuentaNorm = normalizarCuenta(cuenta);
-                    dniDict.put(cuentaNorm, new PersonaConDNI(cod, nombreyapellido, dni));
+            while (escConDNI.siguienteLinea()) {
+                // Campos: cuenta;?;cod;nombreyapellido;dni (se copian sin armar Strings)
+                if (escConDNI.cantidadCampos() >= 5) {
+                    dniDict.agregar(escConDNI, 0, 2, 3, 4);
 
                     contadorCarga++;
                     if (contadorCarga % 100000 == 0) {
@@ -194,97 +850,195 @@ public class MatchearDNI {
                     }
                 }
             }
-            brConDNI.close();
+        }
+        dniDict.finalizarCarga();
+        return dniDict;
+    }
 
-            System.out.println("Cargados " + dniDict.size() + " registros con DNI");
-            System.out.println("\nProcesando archivo sin DNI (400k registros)...\n");
+    // Carga el índice desde el snapshot si sigue vigente; si no, parsea con_dni.txt
+    // y guarda el snapshot (snapshot null = sin snapshot)
+    static IndiceCuentas cargarIndice(String archivoConDNI, String snapshot) throws IOException {
+        if (snapshot != null) {
+            long inicioSnapshot = System.nanoTime();
+            IndiceCuentas dniDict = SnapshotIndice.cargar(archivoConDNI, snapshot);
+            if (dniDict != null) {
+                System.out.println("Índice cargado desde " + snapshot + " en " +
+                    (System.nanoTime() - inicioSnapshot) / 1_000_000 + " ms");
+                return dniDict;
+            }
+        }
 
-            // Paso 2: Procesar archivo sin DNI
-            BufferedReader brSinDNI = new BufferedReader(
-                new InputStreamReader(new FileInputStream(archivoSinDNI), "ISO-8859-1")
-            );
+        IndiceCuentas dniDict = cargarConDNI(archivoConDNI);
+        if (snapshot != null) {
+            long inicioSnapshot = System.nanoTime();
+            SnapshotIndice.guardar(dniDict, archivoConDNI, snapshot);
+            System.out.println("Snapshot guardado en " + snapshot + " (" +
+                (System.nanoTime() - inicioSnapshot) / 1_000_000 + " ms)");
+        }
+        return dniDict;
+    }
 
-            List<Resultado> resultados = new ArrayList<>();
-            int matcheados = 0;
-            int noMatcheados = 0;
-            // int rechazadosPorNombre = 0;  // COMENTADO: Ya no usamos rechazados
-            Map<String, Integer> contadorPorCod = new HashMap<>();  // Para contar por COD
-
-            brSinDNI.readLine(); // Saltar header
-            int idx = 0;
-
-            while ((linea = brSinDNI.readLine()) != null) {
-                idx++;
-                String[] campos = parsearLineaCSV(linea);
-
-                if (campos.length >= 2) {
-                    String cuenta = campos[0];
-                    String nombreSinDNI = campos[1];
-
-                    String cuentaNorm = normalizarCuenta(cuenta);
-
-                    // Buscar por cuenta
-                    if (dniDict.containsKey(cuentaNorm)) {
-                        PersonaConDNI persona = dniDict.get(cuentaNorm);
-
-                        // Verificar similitud de nombres
-                        double similitud = similitudNombre(nombreSinDNI, persona.nombreyapellido);
-
-                        // NUEVO: Agregar TODOS los encontrados con cualquier similitud
-                        resultados.add(new Resultado(
-                            cuenta,
-                            nombreSinDNI,
-                            persona.dni,
-                            persona.cod,
-                            String.format("%.2f%%", similitud * 100)
-                        ));
-                        matcheados++;
-
-                        // Contar por COD
-                        contadorPorCod.put(persona.cod, contadorPorCod.getOrDefault(persona.cod, 0) + 1);
-
-                        /* COMENTADO: Lógica anterior con umbral de 51%
-                        if (similitud >= 0.51) {
-                            resultados.add(new Resultado(
-                                cuenta,
-                                nombreSinDNI,
-                                persona.dni,
-                                persona.cod,
-                                String.format("%.2f%%", similitud * 100)
-                            ));
-                            matcheados++;
-                        } else {
-                            resultados.add(new Resultado(
-                                cuenta,
-                                nombreSinDNI,
-                                "RECHAZADO_NOMBRE_DIFERENTE",
-                                "",
-                                String.format("%.2f%%", similitud * 100)
-                            ));
-                            rechazadosPorNombre++;
-                        }
-                        */
-                    } else {
-                        // NUEVO: Generar contraseña aleatoria para los no encontrados
-                        String passwordAleatoria = generarPasswordAleatoria();
-                        resultados.add(new Resultado(
-                            cuenta,
-                            nombreSinDNI,
-                            passwordAleatoria,
-                            "",
-                            "NO_ENCONTRADO"
-                        ));
-                        noMatcheados++;
-                    }
+    // Paso 1 y 2 con el índice de con_dni.txt en memoria
+    static BloqueProcesado procesarEnMemoria(Opciones opciones, String archivoConDNI, String archivoSinDNI,
+                                             MetricasCorrida metricas, EncriptadorCuentas encriptador,
+                                             SalidaParticionada particiones,
+                                             CheckpointMatcheo checkpoint) throws IOException {
+        // Paso 1: Cargar archivo con DNI (desde el snapshot si sigue vigente)
+        metricas.fase("carga");
+        long inicioCarga = System.nanoTime();
+        IndiceCuentas dniDict = cargarIndice(archivoConDNI, opciones.snapshot);
+
+        metricas.sumarEtapa(MetricasCorrida.Etapa.CARGA, System.nanoTime() - inicioCarga, dniDict.cantidadRegistros());
+        metricas.registrosConDNI(dniDict.size());
+        System.out.println("Cargados " + dniDict.size() + " registros con DNI" +
+            " (índice: " + (dniDict.bytesOcupados() / (1024 * 1024)) + " MB)");
+        if (dniDict.cuentasAmbiguas() > 0) {
+            System.out.println("  " + dniDict.cuentasAmbiguas() + " cuentas con más de un candidato");
+        }
+        System.out.println("\nProcesando archivo sin DNI (400k registros) con " + opciones.hilos + " hilo(s)...\n");
+
+        // Índice difuso por nombre (opcional) para las cuentas no encontradas
+        IndiceDifuso difuso = null;
+        if (opciones.candidatos > 0) {
+            long inicioDifuso = System.nanoTime();
+            difuso = new IndiceDifuso(dniDict, opciones.candidatos);
+            System.out.println("Índice difuso por nombre armado en " +
+                (System.nanoTime() - inicioDifuso) / 1_000_000 + " ms (" +
+                (difuso.bytesOcupados() / (1024 * 1024)) + " MB)");
+        }
 
-                    if (idx % 10000 == 0) {
-                        System.out.println("Procesados " + idx + " registros... " +
-                            "(Matcheados: " + matcheados +
-                            ", No encontrados: " + noMatcheados + ")");
+        // Paso 2: Procesar archivo sin DNI, escribiendo los resultados a medida que salen
+        if (opciones.curvaAceleracion) {
+            medirCurvaAceleracion(dniDict, difuso, archivoSinDNI, opciones.hilos);
+        }
+
+        metricas.fase("matcheo");
+        long[] largosPrevios = checkpoint != null ? checkpoint.largosPrevios() : null;
+        try (SalidaResultados salida = new SalidaResultados(difuso != null, metricas, encriptador, particiones,
+                largosPrevios)) {
+            if (largosPrevios != null && encriptador != null) {
+                reenviarEncontrados(encriptador, largosPrevios[0]);
+            }
+            return procesarSinDNI(dniDict, difuso, archivoSinDNI, opciones.hilos, salida, checkpoint, true);
+        }
+    }
+
+    // Al retomar, los encontrados que ya estaban en todos_encontrados.txt pueden no
+    // haber llegado a encriptarse: se vuelven a pasar y el encriptador saltea los
+    // que ya tiene en cuentas_encriptadas.txt
+    static void reenviarEncontrados(EncriptadorCuentas encriptador, long largoTodos) throws IOException {
+        try (EscanerCSV esc = new EscanerCSV("todos_encontrados.txt", 0, largoTodos)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                if (esc.cantidadCampos() >= 4) {
+                    encriptador.enviar(esc.campo(0), esc.campo(1), esc.campo(2), esc.campo(3));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Opciones opciones = Opciones.parsear(args);
+        if (opciones == null) {
+            return;
+        }
+        cascada = opciones.cascada;
+
+        if (opciones.servidor > 0) {
+            // Queda atendiendo en los hilos del servidor
+            try {
+                ServidorMatcheo.ejecutar("con_dni.txt", opciones);
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        System.out.println("=== INICIANDO PROCESO DE MATCHEO ===\n");
+
+        // Rutas de archivos (ajustar según ubicación)
+        String archivoConDNI = "con_dni.txt";
+        String archivoSinDNI = "sin_dni.txt";
+        String archivoResultado = "resultado_matcheado.txt";
+
+        try {
+            // Si el índice de con_dni.txt no entra en el presupuesto, join externo en disco
+            long indiceEstimado = JoinExterno.estimarBytesIndice(archivoConDNI);
+            boolean externo = !opciones.delta && (opciones.joinExterno || indiceEstimado > opciones.memoriaMaxima);
+            boolean conCandidatos = opciones.candidatos > 0 && !externo && !opciones.delta;
+
+            MetricasCorrida metricas = new MetricasCorrida(
+                opciones.delta ? "delta" : externo ? "join_externo" : "memoria",
+                externo || opciones.delta ? 1 : opciones.hilos);
+            metricas.cascada(cascada);
+            if (opciones.metricasCada > 0) {
+                metricas.iniciarSnapshots("metricas_en_curso.json", opciones.metricasCada);
+            }
+
+            // Journal para retomar si la corrida se corta (solo con el índice en memoria)
+            CheckpointMatcheo checkpoint = null;
+            if (opciones.checkpoint) {
+                if (externo || opciones.delta) {
+                    System.out.println("  (--checkpoint no aplica al join externo ni al modo delta)");
+                } else {
+                    checkpoint = CheckpointMatcheo.abrir(CheckpointMatcheo.ARCHIVO, archivoConDNI, archivoSinDNI,
+                        conCandidatos, cascada.puntajes(), SalidaResultados.archivos(conCandidatos));
+                }
+            }
+            boolean retoma = checkpoint != null && checkpoint.retoma();
+
+            // Encriptación y particiones opcionales de los encontrados a medida que se
+            // escriben; al cerrarse, el encriptador espera los pedidos pendientes y las
+            // particiones se sellan
+            BloqueProcesado total;
+            try (CheckpointMatcheo journal = checkpoint;
+                 EncriptadorCuentas encriptador = opciones.encriptar == null ? null : new EncriptadorCuentas(
+                    opciones.encriptar, opciones.encriptarMaximo, opciones.encriptarInseguro, metricas, retoma);
+                 SalidaParticionada particiones = !opciones.particionado() ? null : new SalidaParticionada(
+                    opciones.particiones, opciones.descartarOtrosCod, opciones.filasPorSegmento, metricas)) {
+                if (opciones.delta) {
+                    System.out.println("Modo delta: solo se matchean las filas que cambiaron desde la corrida anterior");
+                    if (opciones.candidatos > 0 || opciones.curvaAceleracion || opciones.joinExterno) {
+                        System.out.println("  (--candidatos, --curva-aceleracion y --join-externo no aplican al modo delta)");
                     }
+                    try (SalidaResultados salida = new SalidaResultados(false, metricas, encriptador, particiones)) {
+                        total = MatcheoIncremental.procesar(archivoConDNI, archivoSinDNI,
+                            MatcheoIncremental.ARCHIVO_ESTADO, salida, metricas);
+                    }
+                } else if (externo) {
+                    System.out.println("Índice estimado " + indiceEstimado / (1024 * 1024) + " MB, presupuesto " +
+                        opciones.memoriaMaxima / (1024 * 1024) + " MB: cruce por ordenamiento externo");
+                    if (opciones.candidatos > 0 || opciones.curvaAceleracion || opciones.hilos > 1) {
+                        System.out.println("  (--candidatos, --curva-aceleracion y --threads no aplican al join externo)");
+                    }
+                    try (SalidaResultados salida = new SalidaResultados(false, metricas, encriptador, particiones)) {
+                        total = JoinExterno.procesar(archivoConDNI, archivoSinDNI, opciones.memoriaMaxima,
+                            salida, metricas);
+                    }
+                } else {
+                    total = procesarEnMemoria(opciones, archivoConDNI, archivoSinDNI, metricas, encriptador,
+                        particiones, journal);
+                }
+                if (encriptador != null) {
+                    metricas.fase("encriptacion");
                 }
             }
-            brSinDNI.close();
+            if (checkpoint != null) {
+                checkpoint.terminar();  // Terminó bien: la próxima corrida empieza de cero
+            }
+
+            // Reporte de métricas junto a los archivos de salida
+            metricas.detenerSnapshots();
+            metricas.totales(total);
+            metricas.fase("terminado");
+            metricas.escribirJson("reporte_corrida.json");
+
+            int matcheados = total.matcheados;
+            int noMatcheados = total.noMatcheados;
+            // int rechazadosPorNombre = 0;  // COMENTADO: Ya no usamos rechazados
+            Map<String, Integer> contadorPorCod = total.contadorPorCod;  // Para contar por COD
+            int idx = total.procesados;
 
             // Paso 3: Mostrar estadísticas por COD
             System.out.println("\n=== ESTADÍSTICAS POR COD ===");
@@ -301,65 +1055,34 @@ public class MatchearDNI {
             System.out.println("Matcheados exitosamente: " + matcheados);
             // System.out.println("Rechazados por nombre diferente: " + rechazadosPorNombre);  // COMENTADO
             System.out.println("No encontrados (con password generada): " + noMatcheados);
-
-            System.out.println("\nGuardando resultados...");
-
-            // NUEVO: Archivo con TODOS los encontrados (cualquier similitud)
-            BufferedWriter bwTodos = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream("todos_encontrados.txt"), "ISO-8859-1")
-            );
-
-            // NUEVO: Archivo solo con los de 51% o más
-            BufferedWriter bw51Plus = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream("encontrados_51_o_mas.txt"), "ISO-8859-1")
-            );
-
-            String headerTodos = "\"cuenta\";\"nombre\";\"dni\";\"cod\"\n";
-            String header51Plus = "\"cuenta\";\"nombre\";\"dni\";\"cod\";\"similitud\"\n";
-            bwTodos.write(headerTodos);
-            bw51Plus.write(header51Plus);
-
-            // Escribir resultados de encontrados
-            for (Resultado r : resultados) {
-                if (!r.similitud.equals("NO_ENCONTRADO")) {
-                    // Archivo TODOS: sin similitud
-                    String lineaTodos = String.format("\"%s\";\"%s\";\"%s\";\"%s\"\n",
-                        r.cuenta, r.nombre, r.dni, r.cod);
-                    bwTodos.write(lineaTodos);
-
-                    // Escribir en archivo de 51% o más (con similitud)
-                    double similitud = Double.parseDouble(r.similitud.replace("%", "").replace(",", "."));
-                    if (similitud >= 51.0) {
-                        String linea51Plus = String.format("\"%s\";\"%s\";\"%s\";\"%s\";\"%s\"\n",
-                            r.cuenta, r.nombre, r.dni, r.cod, r.similitud);
-                        bw51Plus.write(linea51Plus);
-                    }
-                }
+            if (total.ambiguas > 0) {
+                System.out.println("Encontrados con más de un candidato (se tomó el de mayor similitud): " +
+                    total.ambiguas);
+            }
+            System.out.println("Similitud (" + cascada.descripcion() + "), pares resueltos por etapa: " +
+                cascada.resumen());
+            if (total.busquedasDifusas > 0) {
+                System.out.println(String.format("Búsquedas difusas: %d (promedio %.1f µs por cuenta, %d candidatos)",
+                    total.busquedasDifusas, total.nanosBusquedaDifusa / 1000.0 / total.busquedasDifusas,
+                    total.candidatosEncontrados));
             }
 
-            bwTodos.close();
-            bw51Plus.close();
-
-            System.out.println("Archivos de encontrados guardados:");
+            // Los archivos se escribieron en SalidaResultados durante el paso 2
+            System.out.println("\nResultados guardados:");
             System.out.println("  - todos_encontrados.txt (todas las similitudes)");
             System.out.println("  - encontrados_51_o_mas.txt (solo >= 51%)");
-
-            // NUEVO: Generar archivo input.txt con solo DNI (sin ceros adelante)
-            System.out.println("\nGenerando archivo input.txt con DNIs...");
-            BufferedWriter bwInput = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream("input.txt"), "ISO-8859-1")
-            );
-
-            for (Resultado r : resultados) {
-                if (!r.similitud.equals("NO_ENCONTRADO")) {
-                    // Quitar ceros adelante del DNI
-                    String dniSinCeros = r.dni.replaceFirst("^0+(?!$)", "");
-                    bwInput.write(dniSinCeros + "\n");
-                }
+            System.out.println("  - input.txt (DNIs línea por línea, sin ceros adelante)");
+            System.out.println("  - no_encontrados_con_password.txt");
+            if (conCandidatos) {
+                System.out.println("  - candidatos_no_encontrados.txt");
             }
-
-            bwInput.close();
-            System.out.println("Archivo input.txt generado con DNIs línea por línea (sin ceros adelante)");
+            if (opciones.encriptar != null) {
+                System.out.println("  - cuentas_encriptadas.txt y cuentas_con_error.txt (encriptación)");
+            }
+            if (opciones.particionado()) {
+                System.out.println("  - todos_encontrados_*.txt (particiones, ver " + SalidaParticionada.MANIFIESTO + ")");
+            }
+            System.out.println("  - reporte_corrida.json (métricas por etapa de la corrida)");
 
             /* COMENTADO: Código anterior de rechazados por rangos
             // Guardar rechazados en archivo separado Y agrupados por rangos
@@ -460,29 +1183,14 @@ public class MatchearDNI {
             System.out.println("- similitud: porcentaje de similitud entre nombres");
             */
 
-            // NUEVO: Guardar no encontrados con contraseña generada
-            System.out.println("\nGuardando no encontrados con contraseñas...");
-            BufferedWriter bwNoEncontrados = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream("no_encontrados_con_password.txt"), "ISO-8859-1")
-            );
-
-            bwNoEncontrados.write("\"cuenta\";\"nombre\";\"password\"\n");
-
-            for (Resultado r : resultados) {
-                if (r.similitud.equals("NO_ENCONTRADO")) {
-                    bwNoEncontrados.write(String.format("\"%s\";\"%s\";\"%s\"\n",
-                        r.cuenta, r.nombre, r.dni));  // El dni contiene la password generada
-                }
-            }
-
-            bwNoEncontrados.close();
-            System.out.println("Archivo de no encontrados guardado como 'no_encontrados_con_password.txt'");
-
             System.out.println("\n¡Proceso completado!");
             System.out.println("\nArchivos generados:");
             System.out.println("- todos_encontrados.txt: Todos los matcheos (cualquier similitud)");
             System.out.println("- encontrados_51_o_mas.txt: Solo matcheos con 51% o más de similitud");
             System.out.println("- no_encontrados_con_password.txt: Cuentas no encontradas con contraseñas generadas");
+            if (conCandidatos) {
+                System.out.println("- candidatos_no_encontrados.txt: Candidatos por nombre de las cuentas no encontradas");
+            }
 
         } catch (IOException e) {
             System.err.println("Error: " + e.getMessage());
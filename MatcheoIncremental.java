@@ -0,0 +1,541 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Modo delta: solo se vuelven a matchear las filas afectadas por lo que cambió
+// desde la corrida anterior.
+// El estado (matcheo_delta.estado) guarda un hash de los registros de cada
+// cuenta de con_dni.txt (cod, nombre y dni de todas sus filas, en orden) y,
+// por cada fila de sin_dni.txt, el hash de la fila, el resultado que se escribió
+// y si la cuenta tenía más de un candidato.
+// En la corrida siguiente:
+// - una fila de sin_dni.txt igual a una anterior, cuya cuenta no cambió en
+//   con_dni.txt, reutiliza el resultado anterior (con su password si no se encontró);
+// - las filas nuevas o modificadas, y las de cuentas que cambiaron en con_dni.txt,
+//   se matchean de nuevo con similitudNombre (como el join externo);
+// - las filas que ya no están desaparecen de la salida.
+// Una fila que sigue igual y sigue sin encontrarse conserva su password aunque
+// se haya vuelto a matchear.
+// Si con_dni.txt no cambió (mismo tamaño, fecha y CRC32C), solo se buscan en él
+// los registros de las filas nuevas o modificadas. Si cambió, se recorre una vez
+// sin armar el índice: los hashes se calculan sobre los bytes de cada campo y
+// solo se arman Strings para las cuentas que aparecen en sin_dni.txt.
+// El estado se lee y escribe en bloque con el Lector/Escritor de SnapshotIndice.
+// Las salidas se reescriben completas con SalidaResultados (es escritura
+// secuencial; lo caro era cargar el índice y puntuar).
+public class MatcheoIncremental {
+
+    static final String ARCHIVO_ESTADO = "matcheo_delta.estado";
+
+    private static final long MAGIC = 0x4D444E49444C5433L;  // "MDNIDLT3"
+    private static final int FILAS_POR_BLOQUE_SALIDA = 10_000;
+    private static final int CAMPOS_POR_FILA = 4;  // cuenta, nombre, dni (o password), cod
+
+    private static final long FNV_BASE = 0xcbf29ce484222325L;
+    private static final long FNV_PRIMO = 0x100000001b3L;
+
+    // Tabla abierta de hash de cuenta -> hash de su registro en con_dni.txt
+    // (sin objetos por entrada: clave y valor juntos en un solo array de long,
+    // así cada búsqueda cae en una sola línea de caché)
+    static class TablaHashes {
+        private long[] entradas;  // clave en 2*slot, valor en 2*slot + 1
+        private int cantidad;
+
+        TablaHashes(int capacidadEsperada) {
+            int capacidad = Integer.highestOneBit(Math.max(16, capacidadEsperada / 3 * 4)) << 1;
+            entradas = new long[capacidad * 2];
+        }
+
+        // clave y valor nunca son 0 (ver hash)
+        void poner(long clave, long valor) {
+            if ((cantidad + 1) * 8L > entradas.length * 3L) {  // Factor de carga 0.75
+                agrandar();
+            }
+            int i = posicion(entradas, clave);
+            if (entradas[i] == 0) {
+                entradas[i] = clave;
+                cantidad++;
+            }
+            entradas[i + 1] = valor;
+        }
+
+        // Como poner, pero si la clave ya estaba mezcla valor con el anterior (en
+        // orden: las mismas filas en otro orden dan otro valor)
+        void combinar(long clave, long valor) {
+            long anterior = obtener(clave);
+            poner(clave, anterior == 0 ? valor : terminar(anterior * FNV_PRIMO ^ valor));
+        }
+
+        // 0 si la clave no está
+        long obtener(long clave) {
+            return entradas[posicion(entradas, clave) + 1];
+        }
+
+        int size() {
+            return cantidad;
+        }
+
+        // Copia las entradas, en el orden de la tabla
+        void copiar(long[] claves, long[] valores) {
+            for (int i = 0, n = 0; i < entradas.length; i += 2) {
+                if (entradas[i] != 0) {
+                    claves[n] = entradas[i];
+                    valores[n++] = entradas[i + 1];
+                }
+            }
+        }
+
+        private static int posicion(long[] entradas, long clave) {
+            int mascara = (entradas.length >>> 1) - 1;
+            int slot = (int) (clave ^ (clave >>> 32)) & mascara;
+            while (entradas[slot * 2] != 0 && entradas[slot * 2] != clave) {
+                slot = (slot + 1) & mascara;
+            }
+            return slot * 2;
+        }
+
+        private void agrandar() {
+            long[] viejas = entradas;
+            entradas = new long[viejas.length * 2];
+            for (int i = 0; i < viejas.length; i += 2) {
+                if (viejas[i] != 0) {
+                    int nueva = posicion(entradas, viejas[i]);
+                    entradas[nueva] = viejas[i];
+                    entradas[nueva + 1] = viejas[i + 1];
+                }
+            }
+        }
+    }
+
+    // Fila de sin_dni.txt de esta corrida
+    private static class FilaSinDNI {
+        final String cuenta;
+        final String nombre;
+        final String cuentaNorm;
+        final long hash;
+        MatchearDNI.Resultado anterior;  // Resultado de la misma fila en la corrida anterior, si había
+        boolean anteriorAmbigua;         // Y si su cuenta tenía más de un candidato
+
+        FilaSinDNI(String cuenta, String nombre, String cuentaNorm, long hash) {
+            this.cuenta = cuenta;
+            this.nombre = nombre;
+            this.cuentaNorm = cuentaNorm;
+            this.hash = hash;
+        }
+    }
+
+    // Lo guardado por la corrida anterior
+    private static class Estado {
+        final SnapshotIndice.Fuente fuenteConDNI;
+        final long[] clavesConDNI;    // Hash de cuenta
+        final long[] valoresConDNI;   // Hash de su registro
+        final Map<Long, ArrayDeque<MatchearDNI.Resultado>> filas;  // Por hash de fila, en orden
+        final Set<MatchearDNI.Resultado> ambiguas;                  // Por identidad
+        final int cantidadFilas;
+
+        Estado(SnapshotIndice.Fuente fuenteConDNI, long[] clavesConDNI, long[] valoresConDNI,
+               Map<Long, ArrayDeque<MatchearDNI.Resultado>> filas, Set<MatchearDNI.Resultado> ambiguas,
+               int cantidadFilas) {
+            this.fuenteConDNI = fuenteConDNI;
+            this.clavesConDNI = clavesConDNI;
+            this.valoresConDNI = valoresConDNI;
+            this.filas = filas;
+            this.ambiguas = ambiguas;
+            this.cantidadFilas = cantidadFilas;
+        }
+
+        // Solo hace falta si con_dni.txt cambió
+        TablaHashes tablaConDNI() {
+            TablaHashes tabla = new TablaHashes(clavesConDNI.length);
+            for (int i = 0; i < clavesConDNI.length; i++) {
+                tabla.poner(clavesConDNI[i], valoresConDNI[i]);
+            }
+            return tabla;
+        }
+    }
+
+    public static MatchearDNI.BloqueProcesado procesar(String archivoConDNI, String archivoSinDNI, String archivoEstado,
+                                                      SalidaResultados salida, MetricasCorrida metricas) throws IOException {
+        MatchearDNI.BloqueProcesado total = new MatchearDNI.BloqueProcesado();
+
+        metricas.fase("carga");
+        long inicio = System.nanoTime();
+        String puntajes = MatchearDNI.cascada.puntajes();
+        Estado previo = leerEstado(archivoEstado, puntajes);
+        if (previo == null) {
+            System.out.println("Sin estado de una corrida anterior: se matchean todas las filas");
+        } else {
+            System.out.println("Estado anterior: " + previo.clavesConDNI.length + " cuentas de con_dni.txt, " +
+                previo.cantidadFilas + " filas de sin_dni.txt");
+        }
+        SnapshotIndice.Fuente fuenteConDNI = SnapshotIndice.Fuente.de(archivoConDNI);
+        boolean conDNISinCambios = previo != null && previo.fuenteConDNI.igual(fuenteConDNI);
+
+        // sin_dni.txt: cada fila se empareja con una fila igual de la corrida anterior.
+        // cuentasABuscar son las cuentas de las filas que pueden necesitar matchearse
+        List<FilaSinDNI> filas = new ArrayList<>();
+        TablaHashes cuentasABuscar = new TablaHashes(1 << 16);
+        try (EscanerCSV esc = new EscanerCSV(archivoSinDNI)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                total.procesados++;
+                if (esc.cantidadCampos() < 2) continue;
+                String cuenta = esc.campo(0);
+                String nombre = esc.campo(1);
+                FilaSinDNI fila = new FilaSinDNI(cuenta, nombre, MatchearDNI.normalizarCuenta(cuenta),
+                    hash(cuenta, nombre));
+                if (previo != null) {
+                    ArrayDeque<MatchearDNI.Resultado> iguales = previo.filas.get(fila.hash);
+                    if (iguales != null) {
+                        fila.anterior = iguales.poll();
+                        fila.anteriorAmbigua = previo.ambiguas.contains(fila.anterior);
+                        if (iguales.isEmpty()) {
+                            previo.filas.remove(fila.hash);
+                        }
+                    }
+                }
+                filas.add(fila);
+                if (!conDNISinCambios || fila.anterior == null) {
+                    cuentasABuscar.poner(hash(fila.cuentaNorm), 1);
+                }
+            }
+        }
+        metricas.sumarEtapa(MetricasCorrida.Etapa.PARSEO, System.nanoTime() - inicio, filas.size());
+
+        // con_dni.txt: si no cambió, solo se buscan los registros de las filas
+        // nuevas o modificadas (y si no hay ninguna, ni se lee). Si cambió, se arma
+        // además el hash de los registros de cada cuenta para ver cuáles cambiaron.
+        long inicioConDNI = System.nanoTime();
+        TablaHashes conDNI = null;           // null si con_dni.txt no cambió
+        TablaHashes conDNIAnterior = null;
+        Map<Long, List<MatchearDNI.PersonaConDNI>> personas = new HashMap<>();
+        int filasConDNI = 0;
+        if (conDNISinCambios) {
+            System.out.println("con_dni.txt sin cambios desde la corrida anterior");
+            if (cuentasABuscar.size() > 0) {
+                filasConDNI = escanearConDNI(archivoConDNI, null, cuentasABuscar, personas);
+            }
+            metricas.registrosConDNI(previo.clavesConDNI.length);
+        } else {
+            conDNI = new TablaHashes(previo != null ? previo.clavesConDNI.length : 1 << 20);
+            filasConDNI = escanearConDNI(archivoConDNI, conDNI, cuentasABuscar, personas);
+            metricas.registrosConDNI(conDNI.size());
+            if (previo != null) {
+                conDNIAnterior = previo.tablaConDNI();
+                informarCambiosConDNI(conDNIAnterior, conDNI);
+            }
+        }
+        metricas.sumarEtapa(MetricasCorrida.Etapa.CARGA, System.nanoTime() - inicioConDNI, filasConDNI);
+
+        // Reutilizar o volver a matchear, en el orden de sin_dni.txt
+        metricas.fase("matcheo");
+        int reutilizadas = 0;
+        int rematcheadas = 0;
+        int nuevas = 0;
+        Map<String, Integer> sinUsarPorCuenta = new HashMap<>();  // Filas anteriores que ya no están
+        if (previo != null) {
+            for (ArrayDeque<MatchearDNI.Resultado> restantes : previo.filas.values()) {
+                for (MatchearDNI.Resultado r : restantes) {
+                    sinUsarPorCuenta.merge(MatchearDNI.normalizarCuenta(r.cuenta), 1, Integer::sum);
+                }
+            }
+        }
+        int eliminadas = 0;
+        for (int n : sinUsarPorCuenta.values()) eliminadas += n;
+        int modificadas = 0;
+
+        MatchearDNI.BloqueProcesado bloque = new MatchearDNI.BloqueProcesado();
+        List<FilaSinDNI> filasEstado = new ArrayList<>(filas.size());
+        List<MatchearDNI.Resultado> resultadosEstado = new ArrayList<>(filas.size());
+        BitSet ambiguasEstado = new BitSet();
+        long inicioMatcheo = System.nanoTime();
+        for (FilaSinDNI fila : filas) {
+            MatchearDNI.Resultado r;
+            boolean ambigua;
+            if (fila.anterior != null && (conDNISinCambios || mismoRegistro(conDNIAnterior, conDNI, fila))) {
+                r = fila.anterior;
+                ambigua = fila.anteriorAmbigua;
+                reutilizadas++;
+            } else {
+                List<MatchearDNI.PersonaConDNI> registros = personas.get(hash(fila.cuentaNorm));
+                List<MatchearDNI.PersonaConDNI> candidatos = registros == null
+                    ? Collections.emptyList()
+                    : MatchearDNI.candidatosDistintos(registros);
+                r = matchear(fila, candidatos);
+                ambigua = candidatos.size() > 1;
+                rematcheadas++;
+                if (fila.anterior == null) {
+                    // Nueva, o modificada si reemplaza a una fila anterior de la misma cuenta
+                    Integer sinUsar = sinUsarPorCuenta.get(fila.cuentaNorm);
+                    if (sinUsar != null) {
+                        modificadas++;
+                        eliminadas--;
+                        if (sinUsar == 1) sinUsarPorCuenta.remove(fila.cuentaNorm);
+                        else sinUsarPorCuenta.put(fila.cuentaNorm, sinUsar - 1);
+                    } else {
+                        nuevas++;
+                    }
+                }
+            }
+
+            if (r.similitud == MatchearDNI.Resultado.NO_ENCONTRADO) {
+                total.noMatcheados++;
+            } else {
+                total.matcheados++;
+                total.contadorPorCod.merge(r.cod, 1, Integer::sum);
+            }
+            if (ambigua) {
+                total.ambiguas++;
+                ambiguasEstado.set(filasEstado.size());
+            }
+            filasEstado.add(fila);
+            resultadosEstado.add(r);
+
+            bloque.resultados.add(r);
+            if (bloque.resultados.size() == FILAS_POR_BLOQUE_SALIDA) {
+                salida.escribir(bloque);
+                bloque = new MatchearDNI.BloqueProcesado();
+            }
+        }
+        salida.escribir(bloque);
+        metricas.sumarEtapa(MetricasCorrida.Etapa.SIMILITUD, System.nanoTime() - inicioMatcheo, rematcheadas);
+
+        System.out.println("sin_dni.txt: " + nuevas + " filas nuevas, " + modificadas + " modificadas, " +
+            eliminadas + " eliminadas");
+        System.out.println("Filas reutilizadas: " + reutilizadas + ", vueltas a matchear: " + rematcheadas);
+
+        long inicioEstado = System.nanoTime();
+        long[] claves;
+        long[] valores;
+        if (conDNI == null) {
+            claves = previo.clavesConDNI;
+            valores = previo.valoresConDNI;
+        } else {
+            claves = new long[conDNI.size()];
+            valores = new long[conDNI.size()];
+            conDNI.copiar(claves, valores);
+        }
+        guardarEstado(archivoEstado, fuenteConDNI, puntajes, claves, valores, filasEstado, resultadosEstado, ambiguasEstado);
+        System.out.println("Estado guardado en " + archivoEstado + " (" +
+            (System.nanoTime() - inicioEstado) / 1_000_000 + " ms)");
+        return total;
+    }
+
+    // Recorre con_dni.txt sin armar el índice. Si conDNI no es null, guarda el hash
+    // de los registros de cada cuenta; para las cuentas de cuentasABuscar guarda
+    // además sus registros en personas, en orden de archivo. Devuelve las filas leídas.
+    private static int escanearConDNI(String archivo, TablaHashes conDNI, TablaHashes cuentasABuscar,
+                                      Map<Long, List<MatchearDNI.PersonaConDNI>> personas) throws IOException {
+        int filasConDNI = 0;
+        byte[] auxiliar = new byte[256];
+        try (EscanerCSV esc = new EscanerCSV(archivo)) {
+            esc.siguienteLinea(); // Saltar header
+            while (esc.siguienteLinea()) {
+                // Campos: cuenta;?;cod;nombreyapellido;dni
+                if (esc.cantidadCampos() < 5) continue;
+                filasConDNI++;
+                int necesario = Math.max(Math.max(esc.largoCampo(0), esc.largoCampo(2)),
+                    Math.max(esc.largoCampo(3), esc.largoCampo(4)));
+                if (auxiliar.length < necesario) {
+                    auxiliar = new byte[necesario * 2];
+                }
+
+                // Cuenta sin ceros adelante (como normalizarCuenta)
+                int largoCuenta = esc.copiarCampo(0, auxiliar, 0);
+                int inicioCuenta = 0;
+                while (inicioCuenta < largoCuenta - 1 && auxiliar[inicioCuenta] == '0') {
+                    inicioCuenta++;
+                }
+                long claveCuenta = terminar(sumar(FNV_BASE, auxiliar, inicioCuenta, largoCuenta));
+
+                if (conDNI != null) {
+                    long h = FNV_BASE;
+                    for (int campo = 2; campo <= 4; campo++) {
+                        h = sumar(h, auxiliar, 0, esc.copiarCampo(campo, auxiliar, 0));
+                    }
+                    conDNI.combinar(claveCuenta, terminar(h));
+                }
+
+                if (cuentasABuscar.obtener(claveCuenta) != 0) {
+                    personas.computeIfAbsent(claveCuenta, c -> new ArrayList<>(1))
+                        .add(new MatchearDNI.PersonaConDNI(esc.campo(2), esc.campo(3), esc.campo(4)));
+                }
+            }
+        }
+        return filasConDNI;
+    }
+
+    // Los registros de la cuenta de la fila son los mismos que en la corrida anterior
+    private static boolean mismoRegistro(TablaHashes anterior, TablaHashes actual, FilaSinDNI fila) {
+        long claveCuenta = hash(fila.cuentaNorm);
+        return anterior.obtener(claveCuenta) == actual.obtener(claveCuenta);
+    }
+
+    // Como procesarRegistro, pero contra los candidatos ya buscados. Si la fila es
+    // la misma de antes y sigue sin encontrarse, conserva la password anterior.
+    private static MatchearDNI.Resultado matchear(FilaSinDNI fila, List<MatchearDNI.PersonaConDNI> candidatos) {
+        if (!candidatos.isEmpty()) {
+            return MatchearDNI.mejorCandidato(fila.cuenta, fila.nombre, candidatos);
+        }
+        String password = fila.anterior != null && fila.anterior.similitud == MatchearDNI.Resultado.NO_ENCONTRADO
+            ? fila.anterior.dni
+            : MatchearDNI.generarPasswordAleatoria();
+        return new MatchearDNI.Resultado(fila.cuenta, fila.nombre, password, "",
+            MatchearDNI.Resultado.NO_ENCONTRADO);
+    }
+
+    private static void informarCambiosConDNI(TablaHashes anterior, TablaHashes actual) {
+        int nuevas = 0;
+        int modificadas = 0;
+        int siguen = 0;
+        long[] entradas = actual.entradas;
+        for (int i = 0; i < entradas.length; i += 2) {
+            if (entradas[i] == 0) continue;
+            long antes = anterior.obtener(entradas[i]);
+            if (antes == 0) {
+                nuevas++;
+            } else {
+                siguen++;
+                if (antes != entradas[i + 1]) modificadas++;
+            }
+        }
+        System.out.println("con_dni.txt: " + nuevas + " cuentas nuevas, " + modificadas + " modificadas, " +
+            (anterior.size() - siguen) + " eliminadas");
+    }
+
+    // Hash de 64 bits de los campos (FNV-1a con separador y finalizador de
+    // MurmurHash3); nunca 0, que en la tabla es "vacío". Los campos son
+    // ISO-8859-1, así que da lo mismo sobre los chars que sobre los bytes.
+    static long hash(String... campos) {
+        long h = FNV_BASE;
+        for (String campo : campos) {
+            for (int i = 0; i < campo.length(); i++) {
+                h = (h ^ campo.charAt(i)) * FNV_PRIMO;
+            }
+            h = (h ^ 0xFFFF) * FNV_PRIMO;
+        }
+        return terminar(h);
+    }
+
+    private static long sumar(long h, byte[] bytes, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * FNV_PRIMO;
+        }
+        return (h ^ 0xFFFF) * FNV_PRIMO;
+    }
+
+    private static long terminar(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    // null si no hay estado o no se puede usar (se matchea todo)
+    // Formato (little-endian, como el snapshot): MAGIC | fuente de con_dni.txt |
+    // puntajes de similitud | hashes de cuentas y de registros de con_dni.txt | hashes de filas | similitudes |
+    // filas ambiguas | largos de campos | campos
+    private static Estado leerEstado(String archivo, String puntajes) throws IOException {
+        Path ruta = Paths.get(archivo);
+        if (!Files.exists(ruta)) {
+            return null;
+        }
+        try (SnapshotIndice.Lector lector = new SnapshotIndice.Lector(ruta)) {
+            if (lector.leerLong() != MAGIC) {
+                System.out.println("Estado " + archivo + " con otro formato: se ignora");
+                return null;
+            }
+
+            SnapshotIndice.Fuente fuenteConDNI = new SnapshotIndice.Fuente(lector.leerLong(), lector.leerLong(),
+                lector.leerLong());
+            // Las similitudes guardadas solo valen con los mismos puntajes
+            if (!new String(lector.leerBytes(), StandardCharsets.UTF_8).equals(puntajes)) {
+                System.out.println("Estado " + archivo + " con otros puntajes de similitud: se ignora");
+                return null;
+            }
+            long[] claves = lector.leerLongs();
+            long[] valores = lector.leerLongs();
+
+            long[] hashes = lector.leerLongs();
+            int[] similitudes = lector.leerInts();
+            BitSet esAmbigua = new BitSet(hashes.length);
+            for (int fila : lector.leerInts()) {
+                esAmbigua.set(fila);
+            }
+            int[] largos = lector.leerInts();
+            byte[] campos = lector.leerBytes();
+
+            Map<Long, ArrayDeque<MatchearDNI.Resultado>> filas = new HashMap<>(hashes.length * 2);
+            Set<MatchearDNI.Resultado> ambiguas = Collections.newSetFromMap(new IdentityHashMap<>());
+            int pos = 0;
+            String[] texto = new String[CAMPOS_POR_FILA];
+            for (int i = 0; i < hashes.length; i++) {
+                for (int k = 0; k < CAMPOS_POR_FILA; k++) {
+                    int largo = largos[i * CAMPOS_POR_FILA + k];
+                    texto[k] = new String(campos, pos, largo, StandardCharsets.ISO_8859_1);
+                    pos += largo;
+                }
+                MatchearDNI.Resultado r = new MatchearDNI.Resultado(texto[0], texto[1], texto[2], texto[3], similitudes[i]);
+                filas.computeIfAbsent(hashes[i], h -> new ArrayDeque<>(1)).add(r);
+                if (esAmbigua.get(i)) {
+                    ambiguas.add(r);
+                }
+            }
+            return new Estado(fuenteConDNI, claves, valores, filas, ambiguas, hashes.length);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Estado " + archivo + " ilegible (" + e.getMessage() + "): se ignora");
+            return null;
+        }
+    }
+
+    // Se escribe a un temporal y se renombra: una corrida cortada deja el estado anterior
+    private static void guardarEstado(String archivo, SnapshotIndice.Fuente fuenteConDNI, String puntajes,
+                                      long[] claves, long[] valores, List<FilaSinDNI> filas,
+                                      List<MatchearDNI.Resultado> resultados, BitSet ambiguas) throws IOException {
+        long[] hashes = new long[filas.size()];
+        int[] similitudes = new int[filas.size()];
+        int[] largos = new int[filas.size() * CAMPOS_POR_FILA];
+        byte[] campos = new byte[filas.size() * 64];
+        int pos = 0;
+        for (int i = 0; i < filas.size(); i++) {
+            MatchearDNI.Resultado r = resultados.get(i);
+            hashes[i] = filas.get(i).hash;
+            similitudes[i] = r.similitud;
+            String[] texto = { r.cuenta, r.nombre, r.dni, r.cod };
+            for (int k = 0; k < CAMPOS_POR_FILA; k++) {
+                // Los campos vienen de archivos ISO-8859-1: un byte por carácter
+                String campo = texto[k];
+                if (pos + campo.length() > campos.length) {
+                    campos = Arrays.copyOf(campos, Math.max(campos.length * 2, pos + campo.length()));
+                }
+                for (int c = 0; c < campo.length(); c++) {
+                    campos[pos++] = (byte) campo.charAt(c);
+                }
+                largos[i * CAMPOS_POR_FILA + k] = campo.length();
+            }
+        }
+
+        Path destino = Paths.get(archivo);
+        Path temporal = Paths.get(archivo + ".tmp");
+        try (SnapshotIndice.Escritor escritor = new SnapshotIndice.Escritor(temporal)) {
+            escritor.escribirLong(MAGIC);
+            escritor.escribirLong(fuenteConDNI.tamano);
+            escritor.escribirLong(fuenteConDNI.modificado);
+            escritor.escribirLong(fuenteConDNI.checksum);
+            byte[] textoPuntajes = puntajes.getBytes(StandardCharsets.UTF_8);
+            escritor.escribirBytes(textoPuntajes, textoPuntajes.length);
+            escritor.escribirLongs(claves, claves.length);
+            escritor.escribirLongs(valores, valores.length);
+            escritor.escribirLongs(hashes, hashes.length);
+            escritor.escribirInts(similitudes, similitudes.length);
+            int[] filasAmbiguas = ambiguas.stream().toArray();
+            escritor.escribirInts(filasAmbiguas, filasAmbiguas.length);
+            escritor.escribirInts(largos, largos.length);
+            escritor.escribirBytes(campos, pos);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,304 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Métricas de una corrida de MatchearDNI: tiempo por etapa, histograma de
+// similitudes, latencia por registro, escritores, heap pico y GC.
+// Cada hilo mide en sus propios Parciales (sin sincronización, dentro del
+// BloqueProcesado) y el hilo principal los suma al escribir cada bloque, así que
+// el costo por registro es solo unas lecturas de System.nanoTime().
+// Al terminar se escribe un reporte JSON; opcionalmente se escribe también un
+// snapshot JSON cada N segundos durante la corrida para que lo lea el scheduler.
+public class MetricasCorrida {
+
+    // Etapas medidas. Los tiempos de las etapas por registro son la suma de todos
+    // los hilos (tiempo de CPU aproximado), no tiempo de reloj.
+    public enum Etapa {
+        CARGA("carga"),
+        PARSEO("parseo"),
+        BUSQUEDA("busqueda"),
+        SIMILITUD("similitud"),
+        DIFUSO("busqueda_difusa"),
+        ORDEN_EXTERNO("orden_externo"),
+        CRUCE_EXTERNO("cruce_externo"),
+        ESCRITURA("escritura"),
+        ENCRIPTACION("encriptacion");  // Tiempo de reloj de toda la etapa; cantidad = pedidos HTTP
+
+        final String nombre;
+
+        Etapa(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+
+    // Latencias en buckets log-lineales: 8 por potencia de 2 (error < 12.5%)
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS_LATENCIA = 64 * SUB_BUCKETS;
+
+    // Mediciones de un hilo para un bloque; se suman en orden como el resto de BloqueProcesado
+    static class Parciales {
+        final long[] nanos = new long[Etapa.values().length];
+        final long[] cantidad = new long[Etapa.values().length];
+        final long[] latencias = new long[BUCKETS_LATENCIA];
+        long latenciaMaxima;
+
+        void sumarEtapa(Etapa etapa, long nanosEtapa) {
+            nanos[etapa.ordinal()] += nanosEtapa;
+            cantidad[etapa.ordinal()]++;
+        }
+
+        void registrarLatencia(long nanosRegistro) {
+            latencias[bucket(nanosRegistro)]++;
+            if (nanosRegistro > latenciaMaxima) {
+                latenciaMaxima = nanosRegistro;
+            }
+        }
+
+        void sumar(Parciales otros) {
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] += otros.nanos[i];
+                cantidad[i] += otros.cantidad[i];
+            }
+            for (int i = 0; i < BUCKETS_LATENCIA; i++) {
+                latencias[i] += otros.latencias[i];
+            }
+            latenciaMaxima = Math.max(latenciaMaxima, otros.latenciaMaxima);
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponente = 63 - Long.numberOfLeadingZeros(nanos);   // >= 3
+            int sub = (int) (nanos >>> (exponente - 3)) & (SUB_BUCKETS - 1);
+            return (exponente - 2) * SUB_BUCKETS + sub;
+        }
+
+        // Límite superior (en ns) del bucket
+        private static long limiteBucket(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponente = bucket / SUB_BUCKETS + 2;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponente - 3)) - 1;
+        }
+
+        long percentilLatencia(double p) {
+            long total = 0;
+            for (long c : latencias) total += c;
+            if (total == 0) return 0;
+
+            long objetivo = (long) Math.ceil(p * total);
+            long acumulado = 0;
+            for (int i = 0; i < BUCKETS_LATENCIA; i++) {
+                acumulado += latencias[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(limiteBucket(i), latenciaMaxima);
+                }
+            }
+            return latenciaMaxima;
+        }
+    }
+
+    // Bytes y tiempo de E/S de un archivo de salida
+    private static class Escritor {
+        final String archivo;
+        final long bytes;
+        final long nanos;
+
+        Escritor(String archivo, long bytes, long nanos) {
+            this.archivo = archivo;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+
+    private final long inicioMillis = System.currentTimeMillis();
+    private final long inicioNanos = System.nanoTime();
+    private final String modo;
+    private final int hilos;
+
+    private final Parciales parciales = new Parciales();
+    private final long[] histogramaSimilitud = new long[101];   // Por punto porcentual (0..100)
+    private final List<Escritor> escritores = new ArrayList<>();
+    private long registrosConDNI;
+    private long procesados;
+    private long matcheados;
+    private long noMatcheados;
+    private long ambiguas;
+    private long candidatos;
+    private volatile String fase = "inicio";
+    private volatile CascadaSimilitud cascada;
+
+    private ScheduledExecutorService periodico;
+
+    public MetricasCorrida(String modo, int hilos) {
+        this.modo = modo;
+        this.hilos = hilos;
+    }
+
+    public void fase(String fase) {
+        this.fase = fase;
+    }
+
+    public synchronized void sumarEtapa(Etapa etapa, long nanos, long cantidad) {
+        parciales.nanos[etapa.ordinal()] += nanos;
+        parciales.cantidad[etapa.ordinal()] += cantidad;
+    }
+
+    public synchronized void registrosConDNI(long cantidad) {
+        registrosConDNI = cantidad;
+    }
+
+    // Suma lo medido en un bloque ya escrito
+    public synchronized void sumarBloque(MatchearDNI.BloqueProcesado bloque) {
+        parciales.sumar(bloque.metricas);
+        parciales.nanos[Etapa.DIFUSO.ordinal()] += bloque.nanosBusquedaDifusa;
+        parciales.cantidad[Etapa.DIFUSO.ordinal()] += bloque.busquedasDifusas;
+        procesados += bloque.procesados;
+        matcheados += bloque.matcheados;
+        noMatcheados += bloque.noMatcheados;
+        ambiguas += bloque.ambiguas;
+        candidatos += bloque.candidatos.size();
+        for (MatchearDNI.Resultado r : bloque.resultados) {
+            if (r.similitud != MatchearDNI.Resultado.NO_ENCONTRADO) {
+                histogramaSimilitud[r.similitud / 100]++;
+            }
+        }
+    }
+
+    // Cascada de similitudNombre cuyos pares resueltos por etapa van al reporte
+    public void cascada(CascadaSimilitud cascada) {
+        this.cascada = cascada;
+    }
+
+    public synchronized void registrarEscritor(String archivo, long bytes, long nanos) {
+        escritores.add(new Escritor(archivo, bytes, nanos));
+    }
+
+    // Los totales finales del paso 2 (en el join externo los bloques no traen contadores)
+    public synchronized void totales(MatchearDNI.BloqueProcesado total) {
+        procesados = total.procesados;
+        matcheados = total.matcheados;
+        noMatcheados = total.noMatcheados;
+        ambiguas = total.ambiguas;
+    }
+
+    // Escribe un snapshot en archivo cada segundos segundos hasta detenerSnapshots()
+    public void iniciarSnapshots(String archivo, int segundos) {
+        periodico = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "metricas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        periodico.scheduleAtFixedRate(() -> {
+            try {
+                escribirJson(archivo);
+            } catch (IOException e) {
+                System.err.println("No se pudo escribir el snapshot de métricas: " + e.getMessage());
+            }
+        }, segundos, segundos, TimeUnit.SECONDS);
+    }
+
+    public void detenerSnapshots() {
+        if (periodico != null) {
+            periodico.shutdownNow();
+            periodico = null;
+        }
+    }
+
+    // Escribe el JSON a un temporal y lo renombra, para que nunca se lea a medias
+    public void escribirJson(String archivo) throws IOException {
+        Path destino = Paths.get(archivo);
+        Path temporal = Paths.get(archivo + ".tmp");
+        Files.write(temporal, aJson().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized String aJson() {
+        long duracionNanos = System.nanoTime() - inicioNanos;
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n");
+        json.append("  \"inicio\": \"").append(Instant.ofEpochMilli(inicioMillis)).append("\",\n");
+        json.append("  \"fase\": \"").append(fase).append("\",\n");
+        json.append("  \"duracion_ms\": ").append(duracionNanos / 1_000_000).append(",\n");
+        json.append("  \"modo\": \"").append(modo).append("\",\n");
+        json.append("  \"hilos\": ").append(hilos).append(",\n");
+
+        json.append("  \"registros\": {\"con_dni\": ").append(registrosConDNI)
+            .append(", \"procesados\": ").append(procesados)
+            .append(", \"matcheados\": ").append(matcheados)
+            .append(", \"no_encontrados\": ").append(noMatcheados)
+            .append(", \"ambiguas\": ").append(ambiguas)
+            .append(", \"candidatos\": ").append(candidatos)
+            .append(", \"por_segundo\": ").append(procesados * 1_000_000_000L / Math.max(1, duracionNanos))
+            .append("},\n");
+
+        json.append("  \"etapas\": {");
+        String separador = "\n";
+        for (Etapa etapa : Etapa.values()) {
+            long cantidad = parciales.cantidad[etapa.ordinal()];
+            if (cantidad == 0) continue;
+            long nanos = parciales.nanos[etapa.ordinal()];
+            json.append(separador).append("    \"").append(etapa.nombre).append("\": {\"ms\": ")
+                .append(nanos / 1_000_000).append(", \"cantidad\": ").append(cantidad)
+                .append(", \"ns_por_operacion\": ").append(nanos / cantidad).append('}');
+            separador = ",\n";
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"escritores\": {");
+        separador = "\n";
+        for (Escritor escritor : escritores) {
+            json.append(separador).append("    \"").append(escritor.archivo).append("\": {\"bytes\": ")
+                .append(escritor.bytes).append(", \"ms_vaciado\": ").append(escritor.nanos / 1_000_000).append('}');
+            separador = ",\n";
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"similitud\": {\"histograma_por_punto\": [");
+        for (int i = 0; i < histogramaSimilitud.length; i++) {
+            json.append(i == 0 ? "" : ", ").append(histogramaSimilitud[i]);
+        }
+        json.append("]");
+        if (cascada != null) {
+            json.append(", \"cascada\": \"").append(cascada.descripcion()).append("\", \"pares_resueltos\": {");
+            String[] etapas = cascada.etapas();
+            long[] resueltas = cascada.resueltasPorEtapa();
+            for (int i = 0; i < etapas.length; i++) {
+                json.append(i == 0 ? "" : ", ").append('"').append(etapas[i]).append("\": ").append(resueltas[i]);
+            }
+            json.append('}');
+        }
+        json.append("},\n");
+
+        json.append("  \"latencia_registro_ns\": {\"p50\": ").append(parciales.percentilLatencia(0.50))
+            .append(", \"p90\": ").append(parciales.percentilLatencia(0.90))
+            .append(", \"p99\": ").append(parciales.percentilLatencia(0.99))
+            .append(", \"p999\": ").append(parciales.percentilLatencia(0.999))
+            .append(", \"max\": ").append(parciales.latenciaMaxima).append("},\n");
+
+        long heapPico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                heapPico += pool.getPeakUsage().getUsed();
+            }
+        }
+        long cantidadGC = 0;
+        long msGC = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            cantidadGC += Math.max(0, gc.getCollectionCount());
+            msGC += Math.max(0, gc.getCollectionTime());
+        }
+        json.append("  \"memoria\": {\"heap_pico_mb\": ").append(heapPico / (1024 * 1024))
+            .append(", \"heap_max_mb\": ").append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append("},\n");
+        json.append("  \"gc\": {\"cantidad\": ").append(cantidadGC).append(", \"ms\": ").append(msGC).append("}\n");
+        json.append("}\n");
+        return json.toString();
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+// Distancia de Levenshtein sin matriz completa ni asignaciones por llamada.
+// - Si la cadena más corta tiene hasta 64 caracteres se usa el algoritmo
+//   bit-paralelo de Myers (variante de Hyyrö para distancia global): O(n) palabras.
+//   Los caracteres Latin-1 van en una tabla; los demás (como la Μ griega que deja
+//   toUpperCase de la µ) en una lista corta aparte.
+// - Si no, programación dinámica de dos filas acotada a una banda alrededor de la
+//   diagonal, con buffers reutilizados por hilo.
+// Ambas variantes aceptan un máximo: si la distancia lo supera se corta antes y
+// se devuelve maximo + 1.
+public class MotorLevenshtein {
+
+    // Buffers reutilizables por hilo
+    private static class Buffers {
+        final long[] peq = new long[256];  // Máscara de posiciones de cada char en el patrón
+        final char[] otros = new char[MAX_OTROS];       // Chars del patrón fuera de Latin-1
+        final long[] peqOtros = new long[MAX_OTROS];
+        int[] filaAnterior = new int[64];
+        int[] filaActual = new int[64];
+    }
+
+    private static final int MAX_OTROS = 8;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    // Distancia exacta
+    public static int distancia(CharSequence s1, CharSequence s2) {
+        return distancia(s1, s2, Integer.MAX_VALUE);
+    }
+
+    // Distancia exacta si es <= maximo; si no, maximo + 1
+    public static int distancia(CharSequence s1, CharSequence s2, int maximo) {
+        // El patrón es la más corta de las dos (la distancia es simétrica)
+        CharSequence patron = s1.length() <= s2.length() ? s1 : s2;
+        CharSequence texto = patron == s1 ? s2 : s1;
+        int m = patron.length();
+        int n = texto.length();
+
+        int tope = Math.min(maximo, n);  // La distancia nunca supera al largo mayor
+        if (n - m > tope) return tope + 1;
+        if (m == 0) return n;
+
+        if (m <= 64 && otrosDistintos(patron) <= MAX_OTROS) {
+            return myers(patron, texto, tope);
+        }
+        return dosFilasEnBanda(patron, texto, tope);
+    }
+
+    // Similitud como en MatchearDNI.similitudTexto, pero si no puede llegar a minimo
+    // devuelve -1 sin terminar de calcular la distancia
+    public static double similitud(CharSequence s1, CharSequence s2, double minimo) {
+        int maxLen = Math.max(s1.length(), s2.length());
+        if (maxLen == 0) return 1.0 >= minimo ? 1.0 : -1.0;
+
+        // Mayor distancia que todavía da una similitud >= minimo, con la misma
+        // aritmética de punto flotante que usa similitudTexto
+        int maximo = (int) Math.min(maxLen, Math.max(0, Math.floor((1.0 - minimo) * maxLen) + 1));
+        while (maximo >= 0 && 1.0 - ((double) maximo / maxLen) < minimo) {
+            maximo--;
+        }
+        if (maximo < 0) return -1.0;
+
+        int distancia = distancia(s1, s2, maximo);
+        if (distancia > maximo) return -1.0;
+        return 1.0 - ((double) distancia / maxLen);
+    }
+
+    // Cuántos chars distintos fuera de Latin-1 tiene s (corta al pasar MAX_OTROS)
+    private static int otrosDistintos(CharSequence s) {
+        int distintos = 0;
+        char[] vistos = null;
+        for (int i = 0; i < s.length() && distintos <= MAX_OTROS; i++) {
+            char c = s.charAt(i);
+            if (c <= 0xFF) continue;
+            if (vistos == null) vistos = BUFFERS.get().otros;
+            int k = 0;
+            while (k < distintos && vistos[k] != c) k++;
+            if (k == distintos) {
+                if (distintos < MAX_OTROS) vistos[distintos] = c;
+                distintos++;
+            }
+        }
+        return distintos;
+    }
+
+    // Myers/Hyyrö: las columnas de la matriz de DP se codifican como vectores de
+    // diferencias verticales (+1/-1) en dos long
+    private static int myers(CharSequence patron, CharSequence texto, int maximo) {
+        int m = patron.length();
+        int n = texto.length();
+        Buffers buffers = BUFFERS.get();
+        long[] peq = buffers.peq;
+        char[] otros = buffers.otros;
+        long[] peqOtros = buffers.peqOtros;
+        int cantidadOtros = 0;
+
+        for (int i = 0; i < m; i++) {
+            char c = patron.charAt(i);
+            if (c <= 0xFF) {
+                peq[c] |= 1L << i;
+            } else {
+                int k = 0;
+                while (k < cantidadOtros && otros[k] != c) k++;
+                if (k == cantidadOtros) {
+                    otros[cantidadOtros] = c;
+                    peqOtros[cantidadOtros++] = 0L;
+                }
+                peqOtros[k] |= 1L << i;
+            }
+        }
+
+        long pv = -1L;  // Diferencias verticales +1
+        long mv = 0L;   // Diferencias verticales -1
+        long ultimo = 1L << (m - 1);
+        int puntaje = m;
+
+        try {
+            for (int j = 0; j < n; j++) {
+                char c = texto.charAt(j);
+                long eq;
+                if (c <= 0xFF) {
+                    eq = peq[c];
+                } else {
+                    eq = 0L;
+                    for (int k = 0; k < cantidadOtros; k++) {
+                        if (otros[k] == c) eq = peqOtros[k];
+                    }
+                }
+
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+
+                if ((ph & ultimo) != 0) {
+                    puntaje++;
+                } else if ((mh & ultimo) != 0) {
+                    puntaje--;
+                }
+
+                // La fila 0 crece de a 1 por columna (distancia global, no búsqueda)
+                ph = (ph << 1) | 1L;
+                mh = mh << 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+
+                // Cada columna restante puede bajar la distancia a lo sumo en 1
+                if (puntaje - (n - 1 - j) > maximo) {
+                    return maximo + 1;
+                }
+            }
+        } finally {
+            for (int i = 0; i < m; i++) {
+                char c = patron.charAt(i);
+                if (c <= 0xFF) peq[c] = 0L;
+            }
+        }
+
+        return puntaje <= maximo ? puntaje : maximo + 1;
+    }
+
+    // DP de dos filas limitada a las celdas con |i - j| <= maximo (banda de Ukkonen)
+    private static int dosFilasEnBanda(CharSequence patron, CharSequence texto, int maximo) {
+        int m = patron.length();
+        int n = texto.length();
+        int infinito = maximo + 1;
+
+        Buffers buffers = BUFFERS.get();
+        if (buffers.filaAnterior.length < n + 1) {
+            buffers.filaAnterior = new int[n + 1];
+            buffers.filaActual = new int[n + 1];
+        }
+        int[] anterior = buffers.filaAnterior;
+        int[] actual = buffers.filaActual;
+
+        int hastaInicial = Math.min(n, maximo);
+        for (int j = 0; j <= hastaInicial; j++) {
+            anterior[j] = j;
+        }
+        if (hastaInicial < n) {
+            Arrays.fill(anterior, hastaInicial + 1, n + 1, infinito);
+        }
+
+        for (int i = 1; i <= m; i++) {
+            int desde = Math.max(1, i - maximo);
+            int hasta = Math.min(n, i + maximo);
+            char c = patron.charAt(i - 1);
+
+            actual[desde - 1] = desde == 1 ? Math.min(i, infinito) : infinito;
+            int minimoFila = actual[desde - 1];
+
+            for (int j = desde; j <= hasta; j++) {
+                int costo = c == texto.charAt(j - 1) ? 0 : 1;
+                int valor = Math.min(Math.min(
+                    anterior[j] + 1,              // eliminación
+                    actual[j - 1] + 1),           // inserción
+                    anterior[j - 1] + costo);     // sustitución
+                if (valor > infinito) valor = infinito;
+                actual[j] = valor;
+                if (valor < minimoFila) minimoFila = valor;
+            }
+            if (hasta < n) {
+                actual[hasta + 1] = infinito;  // Fuera de la banda para la fila siguiente
+            }
+
+            // Los valores de una fila nunca bajan en las siguientes
+            if (minimoFila > maximo) {
+                return infinito;
+            }
+
+            int[] aux = anterior;
+            anterior = actual;
+            actual = aux;
+        }
+
+        return Math.min(anterior[n], infinito);
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Encontrados particionados para consumidores en paralelo (reemplaza a
+// dividir_archivo.py, que releía todos_encontrados.txt entero y lo cortaba en
+// 5 tramos iguales). Se escribe junto con todos_encontrados.txt, en la misma pasada:
+// - por hash (--particiones N): todos_encontrados_parte1..N.txt, la parte sale
+//   del hash de la cuenta normalizada (la misma cuenta cae siempre en la misma parte);
+// - por COD (--particionar-cod): todos_encontrados_cod_<COD>.txt.
+// Las filas de COD fuera de EncriptadorCuentas.ENTIDADES_PERMITIDAS van a
+// todos_encontrados_otros_cod.txt, o se descartan con --descartar-otros-cod.
+// Cada partición tiene su propio EscritorLatin1 (con un buffer más chico, porque
+// puede haber decenas abiertas) que lleva el CRC32C de lo escrito.
+// Con --filas-por-segmento M, cada partición se corta en segmentos de M filas
+// (..._parte1_0001.txt, ...) que se sellan apenas se llenan; sin eso se sellan
+// al terminar. Sellar es bajar el archivo al disco, cerrarlo y agregarlo al
+// manifiesto (particiones.manifest.json, reescrito atómicamente), así que un
+// consumidor puede tomar cualquier archivo que figure ahí. "completo" pasa a
+// true cuando ya no van a aparecer más.
+public class SalidaParticionada implements Closeable {
+
+    static final String MANIFIESTO = "particiones.manifest.json";
+
+    private static final int TAMANO_BUFFER = 256 * 1024;
+    private static final String ENCABEZADO = "\"cuenta\";\"nombre\";\"dni\";\"cod\"\n";
+
+    // Archivo sellado, tal como figura en el manifiesto
+    private static class Sellado {
+        final String particion;
+        final String archivo;
+        final int filas;
+        final long bytes;
+        final long checksum;
+
+        Sellado(String particion, String archivo, int filas, long bytes, long checksum) {
+            this.particion = particion;
+            this.archivo = archivo;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.checksum = checksum;
+        }
+    }
+
+    // Partición con su segmento abierto (escritor null si no hay ninguno)
+    private static class Particion {
+        final String nombre;
+        EscritorLatin1 escritor;
+        int segmento;
+        int filas;  // Del segmento abierto
+
+        Particion(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+
+    private final int partes;               // 0 = por COD
+    private final boolean descartarOtros;
+    private final int filasPorSegmento;     // 0 = un solo archivo por partición
+    private final MetricasCorrida metricas;
+    private final Particion[] porHash;
+    private final Map<String, Particion> porCod = new TreeMap<>();
+    private final List<Sellado> sellados = new ArrayList<>();
+    private long descartadas;
+
+    public SalidaParticionada(int partes, boolean descartarOtros, int filasPorSegmento,
+                              MetricasCorrida metricas) throws IOException {
+        this.partes = partes;
+        this.descartarOtros = descartarOtros;
+        this.filasPorSegmento = filasPorSegmento;
+        this.metricas = metricas;
+        porHash = new Particion[partes];
+        for (int i = 0; i < partes; i++) {
+            porHash[i] = new Particion("parte" + (i + 1));
+        }
+        escribirManifiesto(false);  // Vacío: lo que hubiera de una corrida anterior ya no vale
+    }
+
+    // Agrega un encontrado a su partición
+    public void agregar(MatchearDNI.Resultado r) throws IOException {
+        Particion particion;
+        if (!EncriptadorCuentas.ENTIDADES_PERMITIDAS.contains(r.cod)) {
+            if (descartarOtros) {
+                descartadas++;
+                return;
+            }
+            particion = porCod.computeIfAbsent("otros_cod", Particion::new);
+        } else if (partes > 0) {
+            particion = porHash[Math.floorMod(MatchearDNI.normalizarCuenta(r.cuenta).hashCode(), partes)];
+        } else {
+            particion = porCod.computeIfAbsent("cod_" + r.cod, Particion::new);
+        }
+
+        if (particion.escritor == null) {
+            abrirSegmento(particion);
+        }
+        particion.escritor.escribirEntreComillas(r.cuenta).escribir(';')
+            .escribirEntreComillas(r.nombre).escribir(';')
+            .escribirEntreComillas(r.dni).escribir(';')
+            .escribirEntreComillas(r.cod).escribir('\n');
+        particion.filas++;
+
+        if (filasPorSegmento > 0 && particion.filas == filasPorSegmento) {
+            sellar(particion);
+            escribirManifiesto(false);
+        }
+    }
+
+    private void abrirSegmento(Particion particion) throws IOException {
+        particion.segmento++;
+        String archivo = "todos_encontrados_" + particion.nombre +
+            (filasPorSegmento > 0 ? String.format("_%04d", particion.segmento) : "") + ".txt";
+        particion.escritor = new EscritorLatin1(archivo, TAMANO_BUFFER, true);
+        particion.escritor.escribir(ENCABEZADO);
+        particion.filas = 0;
+    }
+
+    private void sellar(Particion particion) throws IOException {
+        EscritorLatin1 escritor = particion.escritor;
+        escritor.confirmar(true);
+        escritor.close();
+        particion.escritor = null;
+        sellados.add(new Sellado(particion.nombre, escritor.archivo(), particion.filas,
+            escritor.bytesEscritos(), escritor.checksum()));
+        metricas.registrarEscritor(escritor.archivo(), escritor.bytesEscritos(), escritor.nanosVaciado());
+    }
+
+    // Se escribe a un temporal y se renombra: nunca se lee a medias
+    private void escribirManifiesto(boolean completo) throws IOException {
+        StringBuilder json = new StringBuilder(256 + sellados.size() * 160);
+        json.append("{\n");
+        json.append("  \"modo\": \"").append(partes > 0 ? "hash" : "cod").append("\",\n");
+        if (partes > 0) {
+            json.append("  \"partes\": ").append(partes).append(",\n");
+        }
+        json.append("  \"completo\": ").append(completo).append(",\n");
+        json.append("  \"descartadas_otros_cod\": ").append(descartadas).append(",\n");
+        json.append("  \"archivos\": [");
+        String separador = "\n";
+        for (Sellado s : sellados) {
+            json.append(separador).append("    {\"particion\": \"").append(s.particion)
+                .append("\", \"archivo\": \"").append(s.archivo)
+                .append("\", \"filas\": ").append(s.filas)
+                .append(", \"bytes\": ").append(s.bytes)
+                .append(", \"crc32c\": \"").append(String.format("%08x", s.checksum)).append("\"}");
+            separador = ",\n";
+        }
+        json.append(sellados.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+
+        Path destino = Paths.get(MANIFIESTO);
+        Path temporal = Paths.get(MANIFIESTO + ".tmp");
+        Files.write(temporal, json.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Sella lo que quedó abierto y marca el manifiesto como completo
+    @Override
+    public void close() throws IOException {
+        List<Particion> abiertas = new ArrayList<>(Arrays.asList(porHash));
+        abiertas.addAll(porCod.values());
+        for (Particion particion : abiertas) {
+            if (particion.escritor == null && particion.segmento == 0 && partes > 0) {
+                abrirSegmento(particion);  // Por hash están siempre las N partes, aunque sea vacías
+            }
+            if (particion.escritor != null) {
+                sellar(particion);
+            }
+        }
+        escribirManifiesto(true);
+
+        int filas = 0;
+        for (Sellado s : sellados) filas += s.filas;
+        System.out.println("Particiones: " + filas + " filas en " + sellados.size() + " archivo(s)" +
+            (descartadas > 0 ? ", " + descartadas + " descartadas por COD" : "") + " (ver " + MANIFIESTO + ")");
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.*;
+import java.util.Arrays;
+
+// Archivos de salida del paso 2. Cada bloque de sin_dni.txt se escribe apenas
+// está procesado (en el orden del archivo) y después se descarta, así que la
+// memoria no depende de la cantidad de líneas de sin_dni.txt.
+// Cada resultado se reparte en una sola pasada a todos los archivos que le
+// corresponden. Con --encriptar, los encontrados se pasan además a EncriptadorCuentas,
+// y con --particiones o --particionar-cod, a SalidaParticionada.
+public class SalidaResultados implements Closeable {
+
+    private static final int UMBRAL_51 = 5100;  // En centésimas de porcentaje
+
+    private static final String[] ARCHIVOS = {
+        "todos_encontrados.txt", "encontrados_51_o_mas.txt", "input.txt",
+        "no_encontrados_con_password.txt", "candidatos_no_encontrados.txt"
+    };
+
+    private final EscritorLatin1 todos;
+    private final EscritorLatin1 mas51;
+    private final EscritorLatin1 input;
+    private final EscritorLatin1 noEncontrados;
+    private final EscritorLatin1 candidatos;  // null sin índice difuso
+    private final MetricasCorrida metricas;
+    private final EncriptadorCuentas encriptador;  // null sin --encriptar
+    private final SalidaParticionada particiones;  // null sin particionar
+
+    public SalidaResultados(boolean conCandidatos, MetricasCorrida metricas, EncriptadorCuentas encriptador,
+                            SalidaParticionada particiones) throws IOException {
+        this(conCandidatos, metricas, encriptador, particiones, null);
+    }
+
+    // Con largos (de CheckpointMatcheo) sigue los archivos existentes desde ahí
+    // en vez de crearlos de nuevo
+    public SalidaResultados(boolean conCandidatos, MetricasCorrida metricas, EncriptadorCuentas encriptador,
+                            SalidaParticionada particiones, long[] largos) throws IOException {
+        this.metricas = metricas;
+        this.encriptador = encriptador;
+        this.particiones = particiones;
+        todos = new EscritorLatin1(ARCHIVOS[0], largos != null ? largos[0] : 0);
+        mas51 = new EscritorLatin1(ARCHIVOS[1], largos != null ? largos[1] : 0);
+        input = new EscritorLatin1(ARCHIVOS[2], largos != null ? largos[2] : 0);
+        noEncontrados = new EscritorLatin1(ARCHIVOS[3], largos != null ? largos[3] : 0);
+        candidatos = conCandidatos ? new EscritorLatin1(ARCHIVOS[4], largos != null ? largos[4] : 0) : null;
+        if (largos != null) {
+            return;  // Los encabezados ya están
+        }
+
+        todos.escribir("\"cuenta\";\"nombre\";\"dni\";\"cod\"\n");
+        mas51.escribir("\"cuenta\";\"nombre\";\"dni\";\"cod\";\"similitud\"\n");
+        noEncontrados.escribir("\"cuenta\";\"nombre\";\"password\"\n");
+        if (candidatos != null) {
+            candidatos.escribir("\"cuenta\";\"nombre\";\"cuenta_candidata\";\"nombre_candidato\";\"dni\";\"cod\";\"similitud\"\n");
+        }
+    }
+
+    // Escribe los resultados y candidatos de un bloque ya procesado
+    public void escribir(MatchearDNI.BloqueProcesado bloque) throws IOException {
+        long inicio = System.nanoTime();
+        for (MatchearDNI.Resultado r : bloque.resultados) {
+            if (r.similitud == MatchearDNI.Resultado.NO_ENCONTRADO) {
+                // El dni contiene la password generada
+                noEncontrados.escribirEntreComillas(r.cuenta).escribir(';')
+                    .escribirEntreComillas(r.nombre).escribir(';')
+                    .escribirEntreComillas(r.dni).escribir('\n');
+                continue;
+            }
+
+            // Archivo TODOS: sin similitud
+            todos.escribirEntreComillas(r.cuenta).escribir(';')
+                .escribirEntreComillas(r.nombre).escribir(';')
+                .escribirEntreComillas(r.dni).escribir(';')
+                .escribirEntreComillas(r.cod).escribir('\n');
+            if (particiones != null) {
+                particiones.agregar(r);
+            }
+
+            // 51% o más sobre el porcentaje ya redondeado a dos decimales
+            if (r.similitud >= UMBRAL_51) {
+                mas51.escribirEntreComillas(r.cuenta).escribir(';')
+                    .escribirEntreComillas(r.nombre).escribir(';')
+                    .escribirEntreComillas(r.dni).escribir(';')
+                    .escribirEntreComillas(r.cod).escribir(';')
+                    .escribir('"').escribirPorcentaje(r.similitud).escribir("\"\n");
+            }
+
+            // input.txt: DNI sin ceros adelante (como normalizarCuenta, sin armar otro String)
+            int inicioDni = 0;
+            while (inicioDni < r.dni.length() - 1 && r.dni.charAt(inicioDni) == '0') {
+                inicioDni++;
+            }
+            input.escribir(r.dni, inicioDni).escribir('\n');
+        }
+
+        if (candidatos != null) {
+            for (MatchearDNI.CandidatoDifuso c : bloque.candidatos) {
+                candidatos.escribirEntreComillas(c.cuenta).escribir(';')
+                    .escribirEntreComillas(c.nombre).escribir(';')
+                    .escribirEntreComillas(c.cuentaCandidata).escribir(';')
+                    .escribirEntreComillas(c.nombreCandidato).escribir(';')
+                    .escribirEntreComillas(c.dni).escribir(';')
+                    .escribirEntreComillas(c.cod).escribir(';')
+                    .escribir('"').escribirPorcentaje(c.similitud).escribir("\"\n");
+            }
+        }
+
+        metricas.sumarEtapa(MetricasCorrida.Etapa.ESCRITURA, System.nanoTime() - inicio, bloque.resultados.size());
+        metricas.sumarBloque(bloque);
+
+        // Los encontrados pasan a la encriptación (se bloquea si la API va más lenta)
+        if (encriptador != null) {
+            for (MatchearDNI.Resultado r : bloque.resultados) {
+                if (r.similitud != MatchearDNI.Resultado.NO_ENCONTRADO) {
+                    encriptador.enviar(r.cuenta, r.nombre, r.dni, r.cod);
+                }
+            }
+        }
+    }
+
+    // Nombres de los archivos de salida, en el orden de confirmar()
+    public static String[] archivos(boolean conCandidatos) {
+        return Arrays.copyOf(ARCHIVOS, conCandidatos ? 5 : 4);
+    }
+
+    // Pasa todo lo escrito a los archivos (y al disco si forzar) y devuelve sus largos
+    public long[] confirmar(boolean forzar) throws IOException {
+        EscritorLatin1[] escritores = escritores();
+        long[] largos = new long[escritores.length];
+        for (int i = 0; i < escritores.length; i++) {
+            escritores[i].confirmar(forzar);
+            largos[i] = escritores[i].bytesEscritos();
+        }
+        return largos;
+    }
+
+    private EscritorLatin1[] escritores() {
+        return candidatos != null ? new EscritorLatin1[] { todos, mas51, input, noEncontrados, candidatos }
+            : new EscritorLatin1[] { todos, mas51, input, noEncontrados };
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (EscritorLatin1 escritor : escritores()) {
+            if (escritor != null) {
+                escritor.close();
+                metricas.registrarEscritor(escritor.archivo(), escritor.bytesEscritos(), escritor.nanosVaciado());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// API de encriptación simulada para probar EncriptadorCuentas sin la real.
+// Recibe el mismo DFHCOMMAREA y responde con la misma forma: WS_SVC_RETURN,
+// WS_ERROR_MSG y WS_ENC_FIELDS.WS_ENC_ACCT (un valor determinístico de cod y cuenta).
+// Simula latencia, una capacidad máxima de pedidos simultáneos (por encima
+// responde 503, para ver al límite adaptativo bajar) y un porcentaje de 500.
+// Las cuentas vacías o no numéricas vuelven con WS_SVC_RETURN "F".
+// Cada 5 segundos informa pedidos/seg y cuántas conexiones distintas se usaron.
+// Uso: java ServidorEncriptacionSimulado [puerto] [latenciaMs] [capacidad] [porcentajeErrores]
+public class ServidorEncriptacionSimulado {
+
+    private final int latenciaMs;
+    private final int capacidad;
+    private final int porcentajeErrores;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicLong atendidos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+    private final Set<String> conexiones = ConcurrentHashMap.newKeySet();
+
+    private HttpServer servidor;
+    private ExecutorService pool;
+
+    public ServidorEncriptacionSimulado(int latenciaMs, int capacidad, int porcentajeErrores) {
+        this.latenciaMs = latenciaMs;
+        this.capacidad = capacidad;
+        this.porcentajeErrores = porcentajeErrores;
+    }
+
+    public static void main(String[] args) {
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        int latenciaMs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int capacidad = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int porcentajeErrores = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        try {
+            ServidorEncriptacionSimulado simulado = new ServidorEncriptacionSimulado(latenciaMs, capacidad, porcentajeErrores);
+            simulado.iniciar(puerto);
+            System.out.println("API simulada en http://localhost:" + puerto + "/ (latencia " + latenciaMs +
+                " ms, capacidad " + capacidad + ", errores " + porcentajeErrores + "%)");
+
+            long anteriores = 0;
+            while (true) {
+                Thread.sleep(5000);
+                long atendidos = simulado.atendidos.get();
+                System.out.println(String.format("  %d pedidos (%.0f/seg), %d rechazados por capacidad, %d conexiones",
+                    atendidos, (atendidos - anteriores) / 5.0, simulado.rechazados.get(), simulado.conexiones.size()));
+                anteriores = atendidos;
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void iniciar(int puerto) throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(puerto), 1024);
+        // Más hilos que capacidad, para que el exceso llegue al handler y se rechace
+        pool = Executors.newFixedThreadPool(capacidad * 2);
+        servidor.setExecutor(pool);
+        servidor.createContext("/", this::atender);
+        servidor.start();
+    }
+
+    public void detener() {
+        servidor.stop(0);
+        pool.shutdownNow();
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        try {
+            byte[] cuerpo = intercambio.getRequestBody().readAllBytes();
+            conexiones.add(intercambio.getRemoteAddress().toString());
+
+            if (!intercambio.getRequestMethod().equals("POST")) {
+                responder(intercambio, 405, "");
+                return;
+            }
+            if (enCurso.incrementAndGet() > capacidad) {
+                enCurso.decrementAndGet();
+                rechazados.incrementAndGet();
+                responder(intercambio, 503, "");
+                return;
+            }
+            try {
+                if (latenciaMs > 0) {
+                    Thread.sleep(latenciaMs);
+                }
+                if (ThreadLocalRandom.current().nextInt(100) < porcentajeErrores) {
+                    responder(intercambio, 500, "");
+                    return;
+                }
+
+                String json = new String(cuerpo, StandardCharsets.UTF_8);
+                String cod = EncriptadorCuentas.valorJson(json, "WS_CLIENT_ID");
+                String cuenta = EncriptadorCuentas.valorJson(json, "WS_INP_ACCT");
+                responder(intercambio, 200, respuesta(cod, cuenta));
+                atendidos.incrementAndGet();
+            } finally {
+                enCurso.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    static String respuesta(String cod, String cuenta) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"DFHCOMMAREA\": {\"WS_CLIENT_ID\": ");
+        EncriptadorCuentas.textoJson(json, cod == null ? "" : cod);
+        if (cuenta == null || cuenta.isEmpty() || !cuenta.chars().allMatch(Character::isDigit)) {
+            json.append(", \"WS_SVC_RETURN\": \"F\", \"WS_ERROR_MSG\": \"CUENTA INVALIDA\"," +
+                " \"WS_ENC_FIELDS\": {\"WS_ENC_ACCT\": \"\"}}}");
+        } else {
+            json.append(", \"WS_SVC_RETURN\": \"S\", \"WS_ERROR_MSG\": \"\", \"WS_ENC_FIELDS\": {\"WS_ENC_ACCT\": \"")
+                .append(encriptar(cod + cuenta)).append("\"}}}");
+        }
+        return json.toString();
+    }
+
+    // No es criptografía: solo un valor estable y distinto por cuenta
+    private static String encriptar(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            h = (h ^ texto.charAt(i)) * 0x100000001b3L;
+        }
+        return String.format("%016X", h);
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(estado, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream os = intercambio.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Modo servidor de MatchearDNI (--servidor PUERTO): carga el índice de con_dni.txt
+// una vez (desde el snapshot si sigue vigente) y responde consultas de cuenta +
+// nombre por HTTP, con el mismo matcheo que la corrida batch.
+//   GET  /matchear?cuenta=...&nombre=...   una consulta (parámetros en UTF-8)
+//   POST /matchear                         lote: líneas "cuenta";"nombre" como las de
+//                                          sin_dni.txt (ISO-8859-1, sin header)
+//   POST /recargar                         vuelve a cargar con_dni.txt en segundo plano
+//   GET  /estado                           registros, recargas, consultas y latencia
+// Cada respuesta trae dni, cod y la similitud de similitudNombre (null si la
+// cuenta no está) del mejor candidato, y cuántos candidatos tenía la cuenta.
+// No se generan passwords: eso es de la corrida batch.
+// No hay autenticación (las respuestas traen DNI y cualquiera puede pedir una
+// recarga), así que por defecto solo escucha en loopback; otra dirección se pide
+// explícitamente con --servidor-host.
+// Un lote se lee línea por línea y se corta con 413 apenas pasa MAXIMO_LOTE
+// líneas o MAXIMO_CUERPO bytes, sin cargar el cuerpo entero en memoria.
+// La recarga arma el índice nuevo aparte y lo cambia de una vez: cada pedido
+// toma el índice vigente al empezar y lo usa hasta el final, así que no hay
+// corte ni lotes con mezcla de índices. Durante la recarga conviven los dos
+// índices en memoria.
+public class ServidorMatcheo {
+
+    static final int MAXIMO_LOTE = 10_000;  // Líneas por pedido
+    static final long MAXIMO_CUERPO = MAXIMO_LOTE * 1024L;  // Bytes por pedido (~1 KB por línea)
+
+    // El cuerpo pasó MAXIMO_CUERPO bytes
+    private static class CuerpoDemasiadoGrande extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Cuenta los bytes leídos y corta al pasar el máximo
+    private static class CuerpoLimitado extends FilterInputStream {
+        private long restantes;
+
+        CuerpoLimitado(InputStream entrada, long maximo) {
+            super(entrada);
+            restantes = maximo;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --restantes < 0) throw new CuerpoDemasiadoGrande();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] destino, int desde, int largo) throws IOException {
+            int leidos = super.read(destino, desde, largo);
+            if (leidos > 0 && (restantes -= leidos) < 0) throw new CuerpoDemasiadoGrande();
+            return leidos;
+        }
+    }
+
+    private final String archivoConDNI;
+    private final String snapshot;
+    private volatile IndiceCuentas indice;
+    private final AtomicBoolean recargando = new AtomicBoolean();
+    private final ExecutorService recargas = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "recarga-indice");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private volatile long ultimaCarga = System.currentTimeMillis();
+    private final AtomicInteger cantidadRecargas = new AtomicInteger();
+
+    private final AtomicLong pedidos = new AtomicLong();
+    private final AtomicLong consultas = new AtomicLong();
+    // Latencia de cada pedido medida en el servidor; un Parciales por hilo del pool
+    private final List<MetricasCorrida.Parciales> latencias = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<MetricasCorrida.Parciales> latenciaDelHilo = ThreadLocal.withInitial(() -> {
+        MetricasCorrida.Parciales parciales = new MetricasCorrida.Parciales();
+        latencias.add(parciales);
+        return parciales;
+    });
+
+    private HttpServer servidor;
+    private ExecutorService pool;
+
+    public ServidorMatcheo(String archivoConDNI, String snapshot, IndiceCuentas indice) {
+        this.archivoConDNI = archivoConDNI;
+        this.snapshot = snapshot;
+        this.indice = indice;
+    }
+
+    // Carga el índice y atiende hasta que se corte el proceso
+    static void ejecutar(String archivoConDNI, MatchearDNI.Opciones opciones) throws IOException {
+        long inicio = System.nanoTime();
+        IndiceCuentas indice = MatchearDNI.cargarIndice(archivoConDNI, opciones.snapshot);
+        System.out.println("Cargados " + indice.size() + " registros con DNI en " +
+            (System.nanoTime() - inicio) / 1_000_000 + " ms (índice: " +
+            (indice.bytesOcupados() / (1024 * 1024)) + " MB)");
+
+        // Cada consulta es CPU pura (microsegundos): un hilo por núcleo alcanza
+        int hilos = opciones.hilos > 1 ? opciones.hilos : Runtime.getRuntime().availableProcessors();
+        ServidorMatcheo servidor = new ServidorMatcheo(archivoConDNI, opciones.snapshot, indice);
+        InetSocketAddress direccion = servidor.iniciar(opciones.servidorHost, opciones.servidor, hilos);
+        String host = direccion.getAddress().getHostAddress();
+        System.out.println("Servidor de matcheo en http://" + (host.contains(":") ? "[" + host + "]" : host) + ":" +
+            direccion.getPort() + "/ con " + hilos + " hilo(s)");
+        if (!direccion.getAddress().isLoopbackAddress()) {
+            System.out.println("  ATENCIÓN: escucha fuera de loopback y no tiene autenticación" +
+                " (las respuestas traen DNI y /recargar rearma el índice)");
+        }
+        System.out.println("  GET /matchear?cuenta=...&nombre=...  POST /matchear  POST /recargar  GET /estado");
+    }
+
+    // host null = solo loopback; devuelve la dirección donde quedó escuchando
+    public InetSocketAddress iniciar(String host, int puerto, int hilos) throws IOException {
+        InetSocketAddress direccion = host == null
+            ? new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto)
+            : new InetSocketAddress(host, puerto);
+        if (direccion.isUnresolved()) {
+            throw new IOException("No se pudo resolver la dirección " + host);
+        }
+        // Sin TCP_NODELAY, los headers y el cuerpo van en dos envíos y el segundo
+        // espera el ACK demorado del cliente: ~40 ms por pedido
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        servidor = HttpServer.create(direccion, 1024);
+        pool = Executors.newFixedThreadPool(hilos);
+        servidor.setExecutor(pool);
+        servidor.createContext("/matchear", this::matchear);
+        servidor.createContext("/recargar", this::recargar);
+        servidor.createContext("/estado", this::estado);
+        servidor.start();
+        return servidor.getAddress();
+    }
+
+    public void detener() {
+        servidor.stop(0);
+        pool.shutdownNow();
+        recargas.shutdownNow();
+    }
+
+    private void matchear(HttpExchange intercambio) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            IndiceCuentas vigente = indice;  // El mismo índice para todo el pedido
+            StringBuilder json = new StringBuilder(256);
+            int cantidad;
+            if (intercambio.getRequestMethod().equals("GET")) {
+                Map<String, String> parametros = parametros(intercambio.getRequestURI().getRawQuery());
+                if (parametros == null) {
+                    responder(intercambio, 400, "{\"error\": \"parámetros mal codificados\"}");
+                    return;
+                }
+                String cuenta = parametros.get("cuenta");
+                String nombre = parametros.getOrDefault("nombre", "");
+                if (cuenta == null || cuenta.isEmpty()) {
+                    responder(intercambio, 400, "{\"error\": \"falta el parámetro cuenta\"}");
+                    return;
+                }
+                consultar(json, vigente, cuenta, nombre);
+                cantidad = 1;
+            } else if (intercambio.getRequestMethod().equals("POST")) {
+                // Como sin_dni.txt: ISO-8859-1, una cuenta por línea
+                String largoDeclarado = intercambio.getRequestHeaders().getFirst("Content-Length");
+                if (largoDeclarado != null && largoDeclarado.matches("\\d{1,18}") &&
+                    Long.parseLong(largoDeclarado) > MAXIMO_CUERPO) {
+                    responder(intercambio, 413, "{\"error\": \"más de " + MAXIMO_CUERPO + " bytes por pedido\"}");
+                    return;
+                }
+                List<String[]> lote = new ArrayList<>();
+                try (BufferedReader cuerpo = new BufferedReader(new InputStreamReader(
+                        new CuerpoLimitado(intercambio.getRequestBody(), MAXIMO_CUERPO),
+                        StandardCharsets.ISO_8859_1))) {
+                    String linea;
+                    while ((linea = cuerpo.readLine()) != null) {
+                        if (linea.trim().isEmpty()) continue;
+                        if (lote.size() == MAXIMO_LOTE) {
+                            responder(intercambio, 413,
+                                "{\"error\": \"más de " + MAXIMO_LOTE + " líneas por pedido\"}");
+                            return;
+                        }
+                        String[] campos = MatchearDNI.parsearLineaCSV(linea);
+                        if (campos.length < 2) {
+                            responder(intercambio, 400, "{\"error\": \"línea sin cuenta y nombre\"}");
+                            return;
+                        }
+                        lote.add(campos);
+                    }
+                } catch (CuerpoDemasiadoGrande e) {
+                    responder(intercambio, 413, "{\"error\": \"más de " + MAXIMO_CUERPO + " bytes por pedido\"}");
+                    return;
+                }
+
+                json.append("{\"resultados\": [");
+                for (int i = 0; i < lote.size(); i++) {
+                    if (i > 0) json.append(", ");
+                    consultar(json, vigente, lote.get(i)[0], lote.get(i)[1]);
+                }
+                json.append("]}");
+                cantidad = lote.size();
+            } else {
+                responder(intercambio, 405, "");
+                return;
+            }
+
+            responder(intercambio, 200, json.toString());
+            pedidos.incrementAndGet();
+            consultas.addAndGet(cantidad);
+            latenciaDelHilo.get().registrarLatencia(System.nanoTime() - inicio);
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    // Como procesarRegistro, para una sola cuenta y sin password: agrega el resultado a json
+    static void consultar(StringBuilder json, IndiceCuentas indice, String cuenta, String nombre) {
+        int candidatos = indice.buscarCandidatos(MatchearDNI.normalizarCuenta(cuenta));
+        if (candidatos == -1) {
+            resultadoJson(json, new MatchearDNI.Resultado(cuenta, nombre, "", "",
+                MatchearDNI.Resultado.NO_ENCONTRADO), 0);
+            return;
+        }
+        int cantidad = indice.cantidadCandidatos(candidatos);
+        MatchearDNI.NombreTokenizado tokenizado = MatchearDNI.tokenizarNombre(nombre, indice.diccionario());
+        MatchearDNI.Eleccion mejor = MatchearDNI.elegirCandidato(cantidad,
+            i -> MatchearDNI.similitudNombre(tokenizado, indice, indice.candidato(candidatos, i)));
+        int registro = indice.candidato(candidatos, mejor.posicion);
+        resultadoJson(json, new MatchearDNI.Resultado(cuenta, nombre, indice.dni(registro), indice.cod(registro),
+            MatchearDNI.centesimas(mejor.similitud)), cantidad);
+    }
+
+    private static void resultadoJson(StringBuilder json, MatchearDNI.Resultado r, int candidatos) {
+        boolean encontrado = r.similitud != MatchearDNI.Resultado.NO_ENCONTRADO;
+        json.append("{\"cuenta\": ");
+        EncriptadorCuentas.textoJson(json, r.cuenta);
+        json.append(", \"nombre\": ");
+        EncriptadorCuentas.textoJson(json, r.nombre);
+        json.append(", \"encontrado\": ").append(encontrado);
+        if (encontrado) {
+            json.append(", \"dni\": ");
+            EncriptadorCuentas.textoJson(json, r.dni);
+            json.append(", \"cod\": ");
+            EncriptadorCuentas.textoJson(json, r.cod);
+            // Centésimas de porcentaje como en encontrados_51_o_mas.txt, sin el %
+            json.append(", \"similitud\": ").append(r.similitud / 100).append('.')
+                .append(r.similitud / 10 % 10).append(r.similitud % 10);
+            json.append(", \"candidatos\": ").append(candidatos).append('}');
+        } else {
+            json.append(", \"dni\": null, \"cod\": null, \"similitud\": null, \"candidatos\": 0}");
+        }
+    }
+
+    // Arma el índice nuevo en segundo plano y lo cambia al terminar
+    private void recargar(HttpExchange intercambio) throws IOException {
+        try {
+            if (!intercambio.getRequestMethod().equals("POST")) {
+                responder(intercambio, 405, "");
+                return;
+            }
+            if (!recargando.compareAndSet(false, true)) {
+                responder(intercambio, 409, "{\"error\": \"ya hay una recarga en curso\"}");
+                return;
+            }
+            recargas.execute(this::recargarIndice);
+            responder(intercambio, 202, "{\"recarga\": \"iniciada\"}");
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    private void recargarIndice() {
+        try {
+            long inicio = System.nanoTime();
+            System.out.println("Recargando " + archivoConDNI + "...");
+            IndiceCuentas nuevo = MatchearDNI.cargarIndice(archivoConDNI, snapshot);
+            indice = nuevo;
+            ultimaCarga = System.currentTimeMillis();
+            cantidadRecargas.incrementAndGet();
+            System.out.println("Índice reemplazado: " + nuevo.size() + " registros en " +
+                (System.nanoTime() - inicio) / 1_000_000 + " ms");
+        } catch (IOException | RuntimeException e) {
+            // Se sigue atendiendo con el índice anterior
+            System.err.println("Error recargando " + archivoConDNI + ": " + e.getMessage());
+        } finally {
+            recargando.set(false);
+        }
+    }
+
+    private void estado(HttpExchange intercambio) throws IOException {
+        try {
+            MetricasCorrida.Parciales total = new MetricasCorrida.Parciales();
+            for (MetricasCorrida.Parciales parciales : latencias) {
+                total.sumar(parciales);  // Lectura sin sincronizar: alcanza para un informe
+            }
+            String json = "{\"registros\": " + indice.size() +
+                ", \"ultima_carga\": \"" + java.time.Instant.ofEpochMilli(ultimaCarga) + "\"" +
+                ", \"recargas\": " + cantidadRecargas.get() +
+                ", \"recargando\": " + recargando.get() +
+                ", \"pedidos\": " + pedidos.get() +
+                ", \"consultas\": " + consultas.get() +
+                ", \"latencia_pedido_ns\": {\"p50\": " + total.percentilLatencia(0.50) +
+                ", \"p99\": " + total.percentilLatencia(0.99) +
+                ", \"p999\": " + total.percentilLatencia(0.999) +
+                ", \"max\": " + total.latenciaMaxima + "}}";
+            responder(intercambio, 200, json);
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    // null si algún parámetro tiene un escape % inválido
+    private static Map<String, String> parametros(String query) {
+        Map<String, String> parametros = new HashMap<>();
+        if (query == null) {
+            return parametros;
+        }
+        try {
+            for (String par : query.split("&")) {
+                int igual = par.indexOf('=');
+                if (igual <= 0) continue;
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return parametros;
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream os = intercambio.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+// Snapshot binario del índice de con_dni para no volver a parsear el archivo en
+// cada corrida. Guarda la tabla de cuentas, el arena de registros, las palabras
+// precalculadas y el diccionario tal como quedaron en memoria.
+// Formato (little-endian):
+//   "MDNI" | versión | tamaño, fecha de modificación y CRC32C de con_dni.txt | datos
+// Los arrays van con su largo adelante. Al cargar se mapea el archivo con
+// FileChannel.map y cada array se copia en bloque; si el archivo fuente cambió
+// (tamaño, fecha o checksum) o la versión no coincide, el snapshot se ignora.
+public class SnapshotIndice {
+
+    private static final int MAGIC = 0x494E444D;  // "MDNI" en little-endian
+    private static final int VERSION = 3;
+    private static final int TAMANO_BUFFER = 1 << 20;
+
+    // Datos del archivo fuente con los que se armó el snapshot (también los usa CheckpointMatcheo)
+    static class Fuente {
+        final long tamano;
+        final long modificado;
+        final long checksum;
+
+        Fuente(long tamano, long modificado, long checksum) {
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.checksum = checksum;
+        }
+
+        static Fuente de(String archivo) throws IOException {
+            Path ruta = Paths.get(archivo);
+            long tamano = Files.size(ruta);
+            long modificado = Files.getLastModifiedTime(ruta).toMillis();
+
+            CRC32C crc = new CRC32C();
+            try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+                for (long pos = 0; pos < tamano; pos += Integer.MAX_VALUE) {
+                    long largo = Math.min(Integer.MAX_VALUE, tamano - pos);
+                    crc.update(canal.map(FileChannel.MapMode.READ_ONLY, pos, largo));
+                }
+            }
+            return new Fuente(tamano, modificado, crc.getValue());
+        }
+
+        boolean igual(Fuente otra) {
+            return tamano == otra.tamano && modificado == otra.modificado && checksum == otra.checksum;
+        }
+    }
+
+    // Escritura secuencial a través de un buffer directo
+    static class Escritor implements Closeable {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+        Escritor(Path ruta) throws IOException {
+            canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void escribirInt(int valor) throws IOException {
+            asegurar(4);
+            buffer.putInt(valor);
+        }
+
+        void escribirLong(long valor) throws IOException {
+            asegurar(8);
+            buffer.putLong(valor);
+        }
+
+        void escribirBytes(byte[] valores, int largo) throws IOException {
+            escribirInt(largo);
+            for (int i = 0; i < largo; ) {
+                asegurar(1);
+                int n = Math.min(largo - i, buffer.remaining());
+                buffer.put(valores, i, n);
+                i += n;
+            }
+        }
+
+        void escribirChars(char[] valores, int largo) throws IOException {
+            escribirInt(largo);
+            for (int i = 0; i < largo; ) {
+                asegurar(2);
+                int n = Math.min(largo - i, buffer.remaining() / 2);
+                buffer.asCharBuffer().put(valores, i, n);
+                buffer.position(buffer.position() + 2 * n);
+                i += n;
+            }
+        }
+
+        void escribirInts(int[] valores, int largo) throws IOException {
+            escribirInt(largo);
+            for (int i = 0; i < largo; ) {
+                asegurar(4);
+                int n = Math.min(largo - i, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(valores, i, n);
+                buffer.position(buffer.position() + 4 * n);
+                i += n;
+            }
+        }
+
+        void escribirLongs(long[] valores, int largo) throws IOException {
+            escribirInt(largo);
+            for (int i = 0; i < largo; ) {
+                asegurar(8);
+                int n = Math.min(largo - i, buffer.remaining() / 8);
+                buffer.asLongBuffer().put(valores, i, n);
+                buffer.position(buffer.position() + 8 * n);
+                i += n;
+            }
+        }
+
+        private void asegurar(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                vaciar();
+            }
+        }
+
+        private void vaciar() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            vaciar();
+            canal.force(false);
+            canal.close();
+        }
+    }
+
+    // Lectura secuencial mapeando cada sección del archivo
+    static class Lector implements Closeable {
+        private final FileChannel canal;
+        private long posicion;
+
+        Lector(Path ruta) throws IOException {
+            canal = FileChannel.open(ruta, StandardOpenOption.READ);
+        }
+
+        int leerInt() throws IOException {
+            return mapear(4).getInt();
+        }
+
+        long leerLong() throws IOException {
+            return mapear(8).getLong();
+        }
+
+        byte[] leerBytes() throws IOException {
+            byte[] valores = new byte[leerLargo()];
+            mapear(valores.length).get(valores);
+            return valores;
+        }
+
+        char[] leerChars() throws IOException {
+            char[] valores = new char[leerLargo()];
+            mapear(2L * valores.length).asCharBuffer().get(valores);
+            return valores;
+        }
+
+        int[] leerInts() throws IOException {
+            int[] valores = new int[leerLargo()];
+            mapear(4L * valores.length).asIntBuffer().get(valores);
+            return valores;
+        }
+
+        long[] leerLongs() throws IOException {
+            long[] valores = new long[leerLargo()];
+            mapear(8L * valores.length).asLongBuffer().get(valores);
+            return valores;
+        }
+
+        private int leerLargo() throws IOException {
+            int largo = leerInt();
+            if (largo < 0) {
+                throw new IOException("Snapshot corrupto: largo negativo");
+            }
+            return largo;
+        }
+
+        private ByteBuffer mapear(long largo) throws IOException {
+            if (posicion + largo > canal.size()) {
+                throw new IOException("Snapshot truncado");
+            }
+            ByteBuffer seccion = canal.map(FileChannel.MapMode.READ_ONLY, posicion, largo)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            posicion += largo;
+            return seccion;
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    // Carga el índice desde el snapshot si sigue correspondiendo a archivoFuente;
+    // devuelve null si no existe, es de otra versión o el archivo fuente cambió
+    public static IndiceCuentas cargar(String archivoFuente, String archivoSnapshot) throws IOException {
+        Path ruta = Paths.get(archivoSnapshot);
+        if (!Files.exists(ruta)) {
+            return null;
+        }
+
+        try (Lector lector = new Lector(ruta)) {
+            if (lector.leerInt() != MAGIC || lector.leerInt() != VERSION) {
+                System.out.println("Snapshot " + archivoSnapshot + " de otra versión: se ignora");
+                return null;
+            }
+
+            Fuente guardada = new Fuente(lector.leerLong(), lector.leerLong(), lector.leerLong());
+            if (!guardada.igual(Fuente.de(archivoFuente))) {
+                System.out.println("Snapshot " + archivoSnapshot + " desactualizado (" + archivoFuente + " cambió): se ignora");
+                return null;
+            }
+
+            return IndiceCuentas.leer(lector);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("No se pudo leer el snapshot " + archivoSnapshot + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Guarda el índice (ya finalizado) junto con los datos de archivoFuente.
+    // Se escribe a un temporal y se renombra para no dejar snapshots a medias.
+    public static void guardar(IndiceCuentas indice, String archivoFuente, String archivoSnapshot) throws IOException {
+        Fuente fuente = Fuente.de(archivoFuente);
+        Path destino = Paths.get(archivoSnapshot);
+        Path temporal = Paths.get(archivoSnapshot + ".tmp");
+
+        try (Escritor escritor = new Escritor(temporal)) {
+            escritor.escribirInt(MAGIC);
+            escritor.escribirInt(VERSION);
+            escritor.escribirLong(fuente.tamano);
+            escritor.escribirLong(fuente.modificado);
+            escritor.escribirLong(fuente.checksum);
+            indice.escribir(escritor);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
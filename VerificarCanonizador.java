@@ -0,0 +1,109 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.Normalizer;
+import java.util.*;
+
+// Verificación exhaustiva de la tabla de CanonizadorLatin1 contra la versión con
+// Normalizer: los 256 caracteres Latin-1 solos, entre letras, entre espacios y en
+// todos los pares (65536), por normalizar(String) y por el camino de bytes de
+// EscanerCSV. La referencia es el normalizarTexto original de MatchearDNI (copiado
+// abajo) y también normalizarConNormalizer, que usan los textos fuera de Latin-1.
+// Termina con código 1 si alguno difiere.
+// Uso: java VerificarCanonizador
+public class VerificarCanonizador {
+
+    private static int fallas;
+
+    public static void main(String[] args) throws IOException {
+        List<String> textos = new ArrayList<>();
+        for (int c = 0; c < 256; c++) {
+            String ch = String.valueOf((char) c);
+            textos.add(ch);
+            textos.add("A" + ch + "B");
+            textos.add("  " + ch + "  ");
+            textos.add("JOSE " + ch + " MARIA");
+        }
+        for (int c1 = 0; c1 < 256; c1++) {
+            for (int c2 = 0; c2 < 256; c2++) {
+                textos.add(new String(new char[] { (char) c1, (char) c2 }));
+            }
+        }
+
+        for (String texto : textos) {
+            String esperado = normalizarTextoOriginal(texto);
+            comparar("normalizarConNormalizer", texto, esperado, CanonizadorLatin1.normalizarConNormalizer(texto));
+            comparar("normalizar", texto, esperado, CanonizadorLatin1.normalizar(texto));
+        }
+
+        // El camino de bytes, con los textos que entran en un campo de EscanerCSV
+        // (sin comillas, ';' ni fin de línea)
+        Path archivo = Files.createTempFile("verificar_canonizador", ".txt");
+        try {
+            List<String> enCampo = new ArrayList<>();
+            StringBuilder csv = new StringBuilder(textos.size() * 12);
+            for (String texto : textos) {
+                if (texto.matches("[^\";\r\n]*")) {
+                    enCampo.add(texto);
+                    csv.append("\"1\";\"").append(texto).append("\"\n");
+                }
+            }
+            Files.write(archivo, csv.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+            int fila = 0;
+            try (EscanerCSV esc = new EscanerCSV(archivo.toString())) {
+                StringBuilder destino = new StringBuilder();
+                while (esc.siguienteLinea()) {
+                    String texto = enCampo.get(fila++);
+                    destino.setLength(0);
+                    comparar("normalizar(EscanerCSV)", texto, normalizarTextoOriginal(texto),
+                        CanonizadorLatin1.normalizar(esc, 1, destino).toString());
+                }
+            }
+            if (fila != enCampo.size()) {
+                System.out.println("FALLA: EscanerCSV leyó " + fila + " de " + enCampo.size() + " filas");
+                fallas++;
+            }
+            System.out.println("Verificados " + textos.size() + " textos (" + enCampo.size() + " por EscanerCSV)");
+        } finally {
+            Files.deleteIfExists(archivo);
+        }
+
+        if (fallas > 0) {
+            System.out.println(fallas + " diferencias");
+            System.exit(1);
+        }
+        System.out.println("OK: la tabla de 256 caracteres da lo mismo que Normalizer");
+    }
+
+    private static void comparar(String camino, String texto, String esperado, String obtenido) {
+        if (!esperado.equals(obtenido) && fallas++ < 20) {
+            System.out.println("FALLA " + camino + ": " + codigos(texto) + " esperaba " + codigos(esperado) +
+                ", dio " + codigos(obtenido));
+        }
+    }
+
+    private static String codigos(String texto) {
+        StringBuilder hex = new StringBuilder("[");
+        for (int i = 0; i < texto.length(); i++) {
+            hex.append(i == 0 ? "" : " ").append(String.format("%02X", (int) texto.charAt(i)));
+        }
+        return hex.append(']').toString();
+    }
+
+    // El normalizarTexto original de MatchearDNI
+    private static String normalizarTextoOriginal(String texto) {
+        if (texto == null || texto.trim().isEmpty()) {
+            return "";
+        }
+
+        // Quitar acentos
+        String normalized = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        normalized = normalized.replaceAll("\\p{M}", "");
+
+        // Mayúsculas y quitar espacios extras
+        normalized = normalized.toUpperCase().trim().replaceAll("\\s+", " ");
+
+        return normalized;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+
+// Verificación de MotorLevenshtein contra la versión de matriz completa que usaba
+// MatchearDNI antes (copiada abajo tal cual). Compara pares al azar de largos por
+// debajo, en y por encima de 64 (Myers/Hyyrö y la banda de dos filas), con
+// alfabetos chicos para que haya coincidencias, caracteres fuera de Latin-1 (la Μ
+// griega que deja toUpperCase de la µ y, para pasar MAX_OTROS, otros más) y con
+// y sin máximo. Termina con código 1 si alguna distancia o similitud difiere.
+// Uso: java VerificarLevenshtein [pares] [semilla]
+public class VerificarLevenshtein {
+
+    private static final String LATIN1 = "ABCDE ÑÁÉ";
+    private static final String OTROS = "ΜΑΒΓΔΕΖΗΘΙΚΛ";  // 12 > MAX_OTROS
+    private static final int[] LARGOS_BORDE = { 0, 1, 2, 63, 64, 65, 66, 127, 128, 129 };
+
+    public static void main(String[] args) {
+        int pares = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long semilla = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Random azar = new Random(semilla);
+        System.out.println("Verificando " + pares + " pares (semilla " + semilla + ")");
+
+        int fallas = 0;
+        for (int i = 0; i < pares && fallas < 20; i++) {
+            String s1 = cadena(azar);
+            String s2 = azar.nextInt(4) == 0 ? mutar(s1, azar) : cadena(azar);
+            int esperada = levenshteinMatriz(s1, s2);
+
+            int distancia = MotorLevenshtein.distancia(s1, s2);
+            if (distancia != esperada) {
+                fallas += falla("distancia", s1, s2, esperada, distancia);
+            }
+            // Como CharSequence que no es String (es lo que pasa con armarNombre)
+            distancia = MotorLevenshtein.distancia(new StringBuilder(s1), new StringBuilder(s2));
+            if (distancia != esperada) {
+                fallas += falla("distancia (StringBuilder)", s1, s2, esperada, distancia);
+            }
+
+            // Con máximo: exacta si entra, si no maximo + 1
+            int maximo = azar.nextInt(Math.max(s1.length(), s2.length()) + 2);
+            distancia = MotorLevenshtein.distancia(s1, s2, maximo);
+            if (distancia != (esperada <= maximo ? esperada : maximo + 1)) {
+                fallas += falla("distancia con máximo " + maximo, s1, s2, esperada, distancia);
+            }
+
+            // Similitud con mínimo: la misma que similitudTexto si llega, si no -1
+            int maxLen = Math.max(s1.length(), s2.length());
+            double similitud = maxLen == 0 ? 1.0 : 1.0 - ((double) esperada / maxLen);
+            double minimo = azar.nextInt(3) == 0 ? similitud : azar.nextDouble();
+            double obtenida = MotorLevenshtein.similitud(s1, s2, minimo);
+            if (obtenida != (similitud >= minimo ? similitud : -1.0)) {
+                System.out.println("FALLA similitud con mínimo " + minimo + ": \"" + s1 + "\" / \"" + s2 +
+                    "\" esperaba " + similitud + ", dio " + obtenida);
+                fallas++;
+            }
+        }
+
+        if (fallas > 0) {
+            System.out.println(fallas + " diferencias");
+            System.exit(1);
+        }
+        System.out.println("OK: Myers, banda y cortes por máximo coinciden con la matriz completa");
+    }
+
+    private static int falla(String que, String s1, String s2, int esperada, int obtenida) {
+        System.out.println("FALLA " + que + ": \"" + s1 + "\" / \"" + s2 + "\" esperaba " + esperada +
+            ", dio " + obtenida);
+        return 1;
+    }
+
+    // Largo de borde o al azar hasta 150; a veces con caracteres fuera de Latin-1
+    private static String cadena(Random azar) {
+        int largo = azar.nextBoolean() ? LARGOS_BORDE[azar.nextInt(LARGOS_BORDE.length)] : azar.nextInt(151);
+        int otros = azar.nextInt(3) == 0 ? 1 + azar.nextInt(OTROS.length()) : 0;
+        StringBuilder texto = new StringBuilder(largo);
+        for (int i = 0; i < largo; i++) {
+            texto.append(otros > 0 && azar.nextInt(4) == 0
+                ? OTROS.charAt(azar.nextInt(otros)) : LATIN1.charAt(azar.nextInt(LATIN1.length())));
+        }
+        return texto.toString();
+    }
+
+    // Unas pocas inserciones, borrados y cambios: distancias chicas, cerca de la banda
+    private static String mutar(String s, Random azar) {
+        StringBuilder texto = new StringBuilder(s);
+        int cambios = azar.nextInt(6);
+        for (int k = 0; k < cambios; k++) {
+            int i = texto.length() == 0 ? 0 : azar.nextInt(texto.length());
+            char c = LATIN1.charAt(azar.nextInt(LATIN1.length()));
+            switch (azar.nextInt(3)) {
+                case 0: texto.insert(i, c); break;
+                case 1: if (texto.length() > 0) texto.deleteCharAt(i); break;
+                default: if (texto.length() > 0) texto.setCharAt(i, c);
+            }
+        }
+        return texto.toString();
+    }
+
+    // El levenshteinDistance original de MatchearDNI (matriz completa)
+    private static int levenshteinMatriz(String s1, String s2) {
+        if (s1 == null || s1.isEmpty()) return s2 == null ? 0 : s2.length();
+        if (s2 == null || s2.isEmpty()) return s1.length();
+
+        int len1 = s1.length();
+        int len2 = s2.length();
+
+        int[][] dp = new int[len1 + 1][len2 + 1];
+
+        for (int i = 0; i <= len1; i++) {
+            dp[i][0] = i;
+        }
+        for (int j = 0; j <= len2; j++) {
+            dp[0][j] = j;
+        }
+
+        for (int i = 1; i <= len1; i++) {
+            for (int j = 1; j <= len2; j++) {
+                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
+                dp[i][j] = Math.min(Math.min(
+                    dp[i - 1][j] + 1,      // eliminación
+                    dp[i][j - 1] + 1),     // inserción
+                    dp[i - 1][j - 1] + cost); // sustitución
+            }
+        }
+
+        return dp[len1][len2];
+    }
+}
@@ -1,9 +1,52 @@
 import csv
+import json
+import os
+import sys
 
 # Configuracion
 ARCHIVO_ENTRADA = "todos_encontrados.txt"
+ARCHIVO_MANIFIESTO = "particiones.manifest.json"
 NUM_PARTES = 5
 
+
+def motivo_para_dividir():
+    """None si las partes de MatchearDNI --particiones 5 sirven tal cual; si no, el motivo"""
+    if not os.path.exists(ARCHIVO_MANIFIESTO):
+        return f"no hay {ARCHIVO_MANIFIESTO}"
+    if os.path.getmtime(ARCHIVO_MANIFIESTO) < os.path.getmtime(ARCHIVO_ENTRADA):
+        return f"{ARCHIVO_MANIFIESTO} es mas viejo que {ARCHIVO_ENTRADA}"
+    try:
+        with open(ARCHIVO_MANIFIESTO, 'r', encoding='utf-8') as f:
+            manifiesto = json.load(f)
+    except ValueError as e:
+        return f"{ARCHIVO_MANIFIESTO} ilegible ({e})"
+    if manifiesto.get("modo") != "hash" or manifiesto.get("partes") != NUM_PARTES:
+        return f"el manifiesto no es de --particiones {NUM_PARTES}"
+    if not manifiesto.get("completo"):
+        return "el manifiesto no esta completo (corrida cortada o en curso)"
+    # Con --filas-por-segmento los archivos son ..._parte1_0001.txt: no sirven aca.
+    # Los COD no permitidos van aparte, pero encriptar_parte.py los salteaba igual
+    esperados = {f"todos_encontrados_parte{i+1}.txt" for i in range(NUM_PARTES)}
+    archivos = {a.get("archivo") for a in manifiesto.get("archivos", [])}
+    archivos.discard("todos_encontrados_otros_cod.txt")
+    if archivos != esperados:
+        return "el manifiesto tiene segmentos u otros archivos"
+    for nombre in sorted(esperados):
+        if not os.path.exists(nombre):
+            return f"falta {nombre}"
+    return None
+
+
+if not os.path.exists(ARCHIVO_ENTRADA):
+    print(f"ERROR: no existe {ARCHIVO_ENTRADA}")
+    sys.exit(1)
+
+motivo = motivo_para_dividir()
+if motivo is None:
+    print(f"Las {NUM_PARTES} partes de {ARCHIVO_MANIFIESTO} son de {ARCHIVO_ENTRADA}: no se divide")
+    sys.exit(0)
+print(f"Se divide porque {motivo}")
+
 print(f"Dividiendo {ARCHIVO_ENTRADA} en {NUM_PARTES} partes...")
 
 # Leer todas las lineas
@@ -1,6 +1,12 @@
 @echo off
-echo Dividiendo archivo en 5 partes...
+rem dividir_archivo.py reusa las partes de MatchearDNI --particiones 5 solo si el
+rem manifiesto es de este todos_encontrados.txt; si no, vuelve a dividir
 python dividir_archivo.py
+if errorlevel 1 (
+    echo ERROR: no se pudieron armar las 5 partes
+    pause
+    exit /b 1
+)
 
 echo.
 echo Ejecutando encriptacion en 5 terminales...